@@ -0,0 +1,98 @@
+package chess.core;
+
+import java.util.Arrays;
+
+// squares attacked by each color and how many pieces attack each of them, kept current by Board.setPiece
+// a change on one square only touches the piece standing there and the sliders whose rays pass through it,
+// so asking whether a square is attacked costs a single lookup
+final class AttackMap {
+    // attack set of the piece on each square, 0 for an empty square
+    private final long[] pieceAttacks = new long[64];
+    // number of attackers of each square, indexed by PieceColor.ordinal() and square
+    private final int[][] counts = new int[2][64];
+    // squares with at least one attacker
+    private final long[] attacked = new long[2];
+
+    // recomputes everything from the board, after a whole position was set up at once
+    void rebuild(Board board) {
+        Arrays.fill(pieceAttacks, 0L);
+        Arrays.fill(counts[0], 0);
+        Arrays.fill(counts[1], 0);
+        attacked[0] = 0L;
+        attacked[1] = 0L;
+        long occupancy = board.getOccupancy();
+        long pieces = occupancy;
+        while (pieces != 0L) {
+            int square = Bitboards.first(pieces);
+            pieces &= pieces - 1;
+            Piece piece = board.getPiece(square);
+            setAttacks(piece.getColor().ordinal(), square, attacksOf(piece, square, occupancy));
+        }
+    }
+
+    long getAttackedSquares(PieceColor color) {
+        return attacked[color.ordinal()];
+    }
+
+    int getAttackCount(int square, PieceColor color) {
+        return counts[color.ordinal()][square];
+    }
+
+    // called once the board's bitboards already show the new piece on the square
+    void update(Board board, int square, Piece oldPiece, Piece newPiece) {
+        long occupancy = board.getOccupancy();
+        if (oldPiece != null) {
+            setAttacks(oldPiece.getColor().ordinal(), square, 0L);
+        }
+        // sliders seeing the square now stop there, or see past it if it was emptied
+        long straightSliders = board.getBitboard(PieceColor.WHITE, PieceType.ROOK) | board.getBitboard(PieceColor.WHITE, PieceType.QUEEN)
+                | board.getBitboard(PieceColor.BLACK, PieceType.ROOK) | board.getBitboard(PieceColor.BLACK, PieceType.QUEEN);
+        long diagonalSliders = board.getBitboard(PieceColor.WHITE, PieceType.BISHOP) | board.getBitboard(PieceColor.WHITE, PieceType.QUEEN)
+                | board.getBitboard(PieceColor.BLACK, PieceType.BISHOP) | board.getBitboard(PieceColor.BLACK, PieceType.QUEEN);
+        long sliders = (Attacks.rook(square, occupancy) & straightSliders)
+                | (Attacks.bishop(square, occupancy) & diagonalSliders);
+        while (sliders != 0L) {
+            int slider = Bitboards.first(sliders);
+            sliders &= sliders - 1;
+            Piece piece = board.getPiece(slider);
+            setAttacks(piece.getColor().ordinal(), slider, attacksOf(piece, slider, occupancy));
+        }
+        if (newPiece != null) {
+            setAttacks(newPiece.getColor().ordinal(), square, attacksOf(newPiece, square, occupancy));
+        }
+    }
+
+    private static long attacksOf(Piece piece, int square, long occupancy) {
+        return switch (piece.getType()) {
+            case PAWN -> Attacks.pawn(piece.getColor(), square);
+            case KNIGHT -> Attacks.knight(square);
+            case BISHOP -> Attacks.bishop(square, occupancy);
+            case ROOK -> Attacks.rook(square, occupancy);
+            case QUEEN -> Attacks.queen(square, occupancy);
+            case KING -> Attacks.king(square);
+        };
+    }
+
+    // replaces the attack set of one piece, only the squares that changed are counted
+    private void setAttacks(int color, int square, long newAttacks) {
+        long oldAttacks = pieceAttacks[square];
+        int[] colorCounts = counts[color];
+        long removed = oldAttacks & ~newAttacks;
+        while (removed != 0L) {
+            int target = Bitboards.first(removed);
+            removed &= removed - 1;
+            if (--colorCounts[target] == 0) {
+                attacked[color] &= ~Bitboards.bit(target);
+            }
+        }
+        long added = newAttacks & ~oldAttacks;
+        while (added != 0L) {
+            int target = Bitboards.first(added);
+            added &= added - 1;
+            if (colorCounts[target]++ == 0) {
+                attacked[color] |= Bitboards.bit(target);
+            }
+        }
+        pieceAttacks[square] = newAttacks;
+    }
+}
@@ -0,0 +1,192 @@
+package chess.core;
+
+// precomputed attack tables, built once when the class is loaded
+// knights, kings and pawns use plain per-square lookups, sliding attacks use magic bitboards: the relevant blockers of a square are multiplied by a magic
+// number and the top bits of the product index a table holding the attack set for that occupancy
+public final class Attacks {
+    private static final long[] ROOK_MAGICS = {
+        0x1080004008801020L, 0x0840092002C03000L, 0x1900200010400900L, 0x0880100008000480L,
+        0x4200100420080200L, 0x8100020100080400L, 0x0200040110886200L, 0x0200008040220411L,
+        0x0404800084400220L, 0x0000401000402000L, 0x0086001081220440L, 0x0408800800100280L,
+        0x000A001201040820L, 0x8848800200840080L, 0x4001000100040200L, 0x0442000102105084L,
+        0x9080010020804100L, 0x0040404000201009L, 0x0000808010002009L, 0x2200090021D00100L,
+        0x0008008008040080L, 0x0004004002010040L, 0x0011040008015042L, 0x00000A0001768104L,
+        0x0000800080204009L, 0x2010004140002001L, 0x9800200280100080L, 0x1000100080080080L,
+        0x0442000A00049020L, 0x2100040080020080L, 0x0800120400900148L, 0x0010040A00128541L,
+        0x2800804000800030L, 0x1010002000400041L, 0x4000200011004100L, 0x0610008410800800L,
+        0x0400802402800800L, 0xC100020080800400L, 0x0002000802000401L, 0x0182085882000401L,
+        0x0220204000808000L, 0x2860100040024022L, 0x0001002004110040L, 0x99101042000A0020L,
+        0x0004080004008080L, 0x0010040002008080L, 0x2012004881020004L, 0x8300842444820011L,
+        0x0088403882010200L, 0x0820400080210100L, 0x0110910040A00300L, 0x0801100280080480L,
+        0x0242009008200600L, 0x1002000489500200L, 0x0040800200010080L, 0x0091800041000080L,
+        0x0000209300488001L, 0x04C1002414824001L, 0x020020000B001041L, 0x7000100004200901L,
+        0x8002002004100802L, 0x30010002084C0007L, 0x0888221800813004L, 0x4000002840840112L
+    };
+    private static final long[] BISHOP_MAGICS = {
+        0xA010041108003100L, 0x006082020A002900L, 0x6810010619200000L, 0x08281A0520000408L,
+        0x0001104001000400L, 0x0018901008048400L, 0x00040A0210245280L, 0x000200210808A402L,
+        0x9140048410821200L, 0x0800091010820041L, 0x20504804832202C0L, 0x0100091401081000L,
+        0x8021011140000012L, 0x0810020804450400L, 0x208B0542109008A2L, 0x0080084A08040204L,
+        0x0040E2A80811244CL, 0x2505022008008108L, 0x0430220100420040L, 0x010A040420220040L,
+        0x1105000290400000L, 0x0093001200822120L, 0x4000A62048043004L, 0x280120048A015004L,
+        0x006090002A020814L, 0x44042000240800D0L, 0x01102800040A4400L, 0x1004080080220040L,
+        0x0001001011004024L, 0x0010044000805040L, 0x0914041200820100L, 0x0004821012821480L,
+        0x0024040500C05021L, 0x0088611002080200L, 0x0116080A00040020L, 0x4000020080080080L,
+        0x2450450140840040L, 0x0000880201484100L, 0x0222020404020092L, 0x8081110600002E00L,
+        0x2842101105000801L, 0x1100809008001025L, 0x00020202221C0400L, 0x0422014022009020L,
+        0x0210046102100C00L, 0xC004008082029102L, 0x00AA461801101200L, 0x0404080080201108L,
+        0x020542108C205002L, 0x0410544804100100L, 0x0040910841100000L, 0x0400200042021100L,
+        0x00004204850400C0L, 0x0200100410A42102L, 0x1040020801210102L, 0x0805040410420000L,
+        0x2884804130100200L, 0x800C262201242000L, 0x1058000194108800L, 0x0014221054420204L,
+        0x0104000012A02200L, 0x0200881003300100L, 0x0140400202840100L, 0x0402020801010201L
+    };
+
+    private static final int[][] KNIGHT_JUMPS = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+    private static final int[][] KING_STEPS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+    // x direction a pawn moves in, indexed by PieceColor.ordinal()
+    private static final int[] PAWN_DIRECTIONS = {-1, 1};
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    // squares a pawn of the given color attacks, indexed by [PieceColor.ordinal()][square]
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // squares strictly between two aligned squares, and the whole line through them
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = stepAttacks(square, KNIGHT_JUMPS);
+            KING_ATTACKS[square] = stepAttacks(square, KING_STEPS);
+            for (int color = 0; color < 2; color++) {
+                int dx = PAWN_DIRECTIONS[color];
+                PAWN_ATTACKS[color][square] = stepAttacks(square, new int[][]{{dx, -1}, {dx, 1}});
+            }
+            initMagic(square, ROOK_DIRECTIONS, ROOK_MAGICS, ROOK_MASKS, ROOK_SHIFTS, ROOK_TABLE);
+            initMagic(square, BISHOP_DIRECTIONS, BISHOP_MAGICS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_TABLE);
+        }
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                long fromBit = Bitboards.bit(from);
+                long toBit = Bitboards.bit(to);
+                if (from == to) {
+                    continue;
+                }
+                if ((rook(from, 0L) & toBit) != 0L) {
+                    BETWEEN[from][to] = rook(from, toBit) & rook(to, fromBit);
+                    LINE[from][to] = (rook(from, 0L) & rook(to, 0L)) | fromBit | toBit;
+                } else if ((bishop(from, 0L) & toBit) != 0L) {
+                    BETWEEN[from][to] = bishop(from, toBit) & bishop(to, fromBit);
+                    LINE[from][to] = (bishop(from, 0L) & bishop(to, 0L)) | fromBit | toBit;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long knight(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long king(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    public static long pawn(PieceColor color, int square) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    public static long rook(int square, long occupancy) {
+        long blockers = occupancy & ROOK_MASKS[square];
+        return ROOK_TABLE[square][(int) ((blockers * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    public static long bishop(int square, long occupancy) {
+        long blockers = occupancy & BISHOP_MASKS[square];
+        return BISHOP_TABLE[square][(int) ((blockers * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    public static long queen(int square, long occupancy) {
+        return rook(square, occupancy) | bishop(square, occupancy);
+    }
+
+    // empty if the squares are not on the same rank, file or diagonal
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    private static void initMagic(int square, int[][] directions, long[] magics,
+                                  long[] masks, int[] shifts, long[][] tables) {
+        // edge squares never block anything further along the ray, so they are left out of the mask
+        long mask = slidingAttacks(square, 0L, directions, true);
+        int bits = Long.bitCount(mask);
+        masks[square] = mask;
+        shifts[square] = 64 - bits;
+        tables[square] = new long[1 << bits];
+        // walk every subset of the mask (carry-rippler) and store its attack set
+        long blockers = 0L;
+        do {
+            int index = (int) ((blockers * magics[square]) >>> shifts[square]);
+            tables[square][index] = slidingAttacks(square, blockers, directions, false);
+            blockers = (blockers - mask) & mask;
+        } while (blockers != 0L);
+    }
+
+    private static long stepAttacks(int square, int[][] steps) {
+        long res = 0L;
+        int x = Bitboards.xOf(square);
+        int y = Bitboards.yOf(square);
+        for (int[] step : steps) {
+            int i = x + step[0];
+            int j = y + step[1];
+            if (i >= 0 && i < 8 && j >= 0 && j < 8) {
+                res |= Bitboards.bit(Bitboards.square(i, j));
+            }
+        }
+        return res;
+    }
+
+    // slow ray walk, only used to fill the tables
+    private static long slidingAttacks(int square, long occupancy, int[][] directions, boolean excludeEdges) {
+        long res = 0L;
+        int x = Bitboards.xOf(square);
+        int y = Bitboards.yOf(square);
+        for (int[] direction : directions) {
+            int i = x + direction[0];
+            int j = y + direction[1];
+            while (i >= 0 && i < 8 && j >= 0 && j < 8) {
+                int nextI = i + direction[0];
+                int nextJ = j + direction[1];
+                if (excludeEdges && (nextI < 0 || nextI > 7 || nextJ < 0 || nextJ > 7)) {
+                    break;
+                }
+                long bit = Bitboards.bit(Bitboards.square(i, j));
+                res |= bit;
+                if ((occupancy & bit) != 0L) {
+                    // ray stops at the first blocker, which is included as a possible capture
+                    break;
+                }
+                i = nextI;
+                j = nextJ;
+            }
+        }
+        return res;
+    }
+}
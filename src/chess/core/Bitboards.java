@@ -0,0 +1,54 @@
+package chess.core;
+
+// helpers for the bitboard representation used by Board
+// a square index is x * 8 + y, so bit 0 is a8 and bit 63 is h1 (same layout as getSquare(x, y))
+public final class Bitboards {
+    public static final long EMPTY = 0L;
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_8 = 0xFFL;
+    public static final long RANK_1 = RANK_8 << 56;
+    // a8 is a light square, so light squares are the ones with x + y even
+    public static final long LIGHT_SQUARES = 0xAA55AA55AA55AA55L;
+
+    private Bitboards() {
+    }
+
+    public static int square(int x, int y) {
+        return (x << 3) | y;
+    }
+
+    public static int xOf(int square) {
+        return square >>> 3;
+    }
+
+    public static int yOf(int square) {
+        return square & 7;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static boolean contains(long bitboard, int square) {
+        return (bitboard & (1L << square)) != 0;
+    }
+
+    // index of the lowest set bit, only meaningful for non-empty bitboards
+    public static int first(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    public static int count(long bitboard) {
+        return Long.bitCount(bitboard);
+    }
+
+    // one bitboard per piece type and color, white pieces first
+    public static int pieceIndex(PieceColor color, PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    public static int pieceIndex(Piece piece) {
+        return pieceIndex(piece.getColor(), piece.getType());
+    }
+}
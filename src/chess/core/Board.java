@@ -2,16 +2,81 @@ package chess.core;
 import chess.core.pieces.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Board {
+    // castling rights bitmask
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING_RIGHTS = 15;
+
+    // rights kept when a piece moves from or to each square, a king or rook leaving its home square
+    // (or a rook being captured there) drops the matching rights
+    static final int[] CASTLING_RIGHTS_MASKS = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_RIGHTS_MASKS, ALL_CASTLING_RIGHTS);
+        CASTLING_RIGHTS_MASKS[Bitboards.square(7, 4)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_RIGHTS_MASKS[Bitboards.square(7, 7)] &= ~WHITE_KINGSIDE;
+        CASTLING_RIGHTS_MASKS[Bitboards.square(7, 0)] &= ~WHITE_QUEENSIDE;
+        CASTLING_RIGHTS_MASKS[Bitboards.square(0, 4)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_RIGHTS_MASKS[Bitboards.square(0, 7)] &= ~BLACK_KINGSIDE;
+        CASTLING_RIGHTS_MASKS[Bitboards.square(0, 0)] &= ~BLACK_QUEENSIDE;
+    }
+
+    // squares are only a view, the piece placement lives in the arrays below
     private final Square[][] board;
 
+    // one bitboard per piece type and color, indexed by Bitboards.pieceIndex
+    private final long[] pieceBitboards = new long[12];
+    // all pieces of one color, indexed by PieceColor.ordinal()
+    private final long[] colorBitboards = new long[2];
+    private long occupied;
+    // piece on each square, indexed by Bitboards.square
+    private final Piece[] pieces = new Piece[64];
+
+    // king square of each color, -1 if that color has no king on the board
+    private final int[] kingSquares = {-1, -1};
+    // number of pieces of each type and color, four bits per Bitboards.pieceIndex
+    // a legal position has at most 10 of a kind (two plus eight promotions), FenParser rejects more
+    private long materialSignature = 0L;
+    // attacked squares and attacker counts of each color
+    private final AttackMap attackMap = new AttackMap();
+    // set by emptyBoard, while set setPiece skips the attack map and the first query rebuilds it in one pass
+    private boolean attackMapStale = false;
+
+    // position state set by Game after every move
+    private PieceColor sideToMove = PieceColor.WHITE;
+    private int castlingRights = 0;
+    private int enPassantSquare = -1;
+    // plies since the last capture or pawn move, for the fifty-move rule
+    private int halfmoveClock = 0;
+    // Zobrist key of the whole position, setPiece and setPositionState xor in only what changed
+    private long zobristKey = 0L;
+    // part of the key coming from the en passant file, kept so it can be xored out again
+    private long enPassantKey = 0L;
+
+    // state that a move destroys, saved by playMove so takeBackMove can restore it without recomputing
+    // one packed int per ply (castling rights, en passant square, halfmove clock, captured piece)
+    // plus the Zobrist key of the position before the move
+    private int[] stateStack = new int[256];
+    private long[] keyStack = new long[256];
+    private int plies = 0;
+
+    // legal moves of the side to move, generated once per position and shared by every caller
+    // keyed by the Zobrist key, so any make or undo invalidates the entry by changing the key
+    private final MoveList validMoves = new MoveList();
+    private long validMovesKey = 0L;
+    private boolean hasValidMoves = false;
+
     public Board() {
         // create empty board
         board = new Square[8][8];
         for (int i = 0; i < 8; i++) {
             for (int j = 0; j < 8; j++) {
-                board[i][j] = new Square(i, j);
+                board[i][j] = new Square(this, i, j);
             }
         }
     }
@@ -20,36 +85,170 @@ public class Board {
         return board[x][y];
     }
 
+    public Square getSquare(int index) {
+        return board[Bitboards.xOf(index)][Bitboards.yOf(index)];
+    }
+
+    public Piece getPiece(int index) {
+        return pieces[index];
+    }
+
+    // the only place where the piece placement changes, keeps the mailbox, bitboards
+    // and king squares in sync; occupied squares are walked through the bitboards
+    void setPiece(int index, Piece piece) {
+        long bit = Bitboards.bit(index);
+        Piece oldPiece = pieces[index];
+        if (oldPiece != null) {
+            int color = oldPiece.getColor().ordinal();
+            zobristKey ^= Zobrist.piece(oldPiece.getIndex(), index);
+            materialSignature -= 1L << (oldPiece.getIndex() * 4);
+            pieceBitboards[oldPiece.getIndex()] &= ~bit;
+            colorBitboards[color] &= ~bit;
+            if (oldPiece.getType() == PieceType.KING) {
+                updateKingSquare(oldPiece.getColor());
+            }
+        }
+        pieces[index] = piece;
+        if (piece != null) {
+            int color = piece.getColor().ordinal();
+            zobristKey ^= Zobrist.piece(piece.getIndex(), index);
+            assert ((materialSignature >>> (piece.getIndex() * 4)) & 0xF) != 0xF : "more than 15 pieces of one kind";
+            materialSignature += 1L << (piece.getIndex() * 4);
+            pieceBitboards[piece.getIndex()] |= bit;
+            colorBitboards[color] |= bit;
+            if (piece.getType() == PieceType.KING) {
+                updateKingSquare(piece.getColor());
+            }
+        }
+        occupied = colorBitboards[0] | colorBitboards[1];
+        if (!attackMapStale) {
+            attackMap.update(this, index, oldPiece, piece);
+        }
+    }
+
+    private void updateKingSquare(PieceColor color) {
+        // a king briefly stands on two squares while makeMove/undoMove relocate it
+        long kings = getBitboard(color, PieceType.KING);
+        kingSquares[color.ordinal()] = (kings != 0L) ? Bitboards.first(kings) : -1;
+    }
+
+    // -1 if there is no king of that color on the board
+    public int getKingSquare(PieceColor color) {
+        return kingSquares[color.ordinal()];
+    }
+
+    public void setPositionState(PieceColor sideToMove, int castlingRights, int enPassantSquare, int halfmoveClock) {
+        if (this.sideToMove != sideToMove) {
+            zobristKey ^= Zobrist.blackToMove();
+        }
+        zobristKey ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+        this.sideToMove = sideToMove;
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantSquare;
+        this.halfmoveClock = halfmoveClock;
+        zobristKey ^= enPassantKey;
+        enPassantKey = computeEnPassantKey();
+        zobristKey ^= enPassantKey;
+    }
+
+    // the en passant file only counts when a pawn of the side to move can actually capture,
+    // otherwise positions that only differ by an unusable target square would hash differently
+    private long computeEnPassantKey() {
+        if (enPassantSquare != -1
+                && (Attacks.pawn(sideToMove.opposite(), enPassantSquare) & getBitboard(sideToMove, PieceType.PAWN)) != 0L) {
+            return Zobrist.enPassantFile(Bitboards.yOf(enPassantSquare));
+        }
+        return 0L;
+    }
+
+    public PieceColor getSideToMove() {
+        return sideToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    // square a pawn can capture en passant on, -1 if the last move was not a double pawn push
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    // how often the current position occurred, counting this occurrence
+    // only positions since the last capture or pawn move can repeat, and only every other ply has the same side to move
+    public int getRepetitionCount() {
+        int count = 1;
+        int oldest = Math.max(0, plies - halfmoveClock);
+        for (int i = plies - 2; i >= oldest; i -= 2) {
+            if (keyStack[i] == zobristKey) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // piece counts of both colors packed four bits per Bitboards.pieceIndex, equal for equal material
+    public long getMaterialSignature() {
+        return materialSignature;
+    }
+
+    public int getMaterialCount(PieceColor color, PieceType type) {
+        return (int) ((materialSignature >>> (Bitboards.pieceIndex(color, type) * 4)) & 0xF);
+    }
+
+    // neither side can ever checkmate: bare kings, a single minor piece,
+    // or only bishops that all stand on squares of the same color
+    public boolean isInsufficientMaterial() {
+        int minors = 0;
+        for (PieceColor color : PieceColor.values()) {
+            if (getMaterialCount(color, PieceType.PAWN) != 0
+                    || getMaterialCount(color, PieceType.ROOK) != 0
+                    || getMaterialCount(color, PieceType.QUEEN) != 0) {
+                return false;
+            }
+            minors += getMaterialCount(color, PieceType.KNIGHT) + getMaterialCount(color, PieceType.BISHOP);
+        }
+        if (minors <= 1) {
+            return true;
+        }
+        if (getMaterialCount(PieceColor.WHITE, PieceType.KNIGHT) + getMaterialCount(PieceColor.BLACK, PieceType.KNIGHT) != 0) {
+            return false;
+        }
+        long bishops = getBitboard(PieceColor.WHITE, PieceType.BISHOP) | getBitboard(PieceColor.BLACK, PieceType.BISHOP);
+        return (bishops & Bitboards.LIGHT_SQUARES) == 0L || (bishops & ~Bitboards.LIGHT_SQUARES) == 0L;
+    }
+
+    public long getBitboard(PieceColor color, PieceType type) {
+        return pieceBitboards[Bitboards.pieceIndex(color, type)];
+    }
+
+    public long getOccupancy(PieceColor color) {
+        return colorBitboards[color.ordinal()];
+    }
+
+    public long getOccupancy() {
+        return occupied;
+    }
+
     public void setupPieces() {
+        PieceType[] backRank = {PieceType.ROOK, PieceType.KNIGHT, PieceType.BISHOP, PieceType.QUEEN,
+                PieceType.KING, PieceType.BISHOP, PieceType.KNIGHT, PieceType.ROOK};
         for (int i = 0; i < 8; i++) {
             // setup pawn pieces
-            board[1][i].setPiece(new Pawn(PieceColor.BLACK));
-            board[6][i].setPiece(new Pawn(PieceColor.WHITE));
-        }
-        // black rooks
-        board[0][0].setPiece(new Rook(PieceColor.BLACK));
-        board[0][7].setPiece(new Rook(PieceColor.BLACK));
-        // white rooks
-        board[7][0].setPiece(new Rook(PieceColor.WHITE));
-        board[7][7].setPiece(new Rook(PieceColor.WHITE));
-        // black knights
-        board[0][1].setPiece(new Knight(PieceColor.BLACK));
-        board[0][6].setPiece(new Knight(PieceColor.BLACK));
-        // white knights
-        board[7][1].setPiece(new Knight(PieceColor.WHITE));
-        board[7][6].setPiece(new Knight(PieceColor.WHITE));
-        // black bishops
-        board[0][2].setPiece(new Bishop(PieceColor.BLACK));
-        board[0][5].setPiece(new Bishop(PieceColor.BLACK));
-        // white bishops
-        board[7][2].setPiece(new Bishop(PieceColor.WHITE));
-        board[7][5].setPiece(new Bishop(PieceColor.WHITE));
-        // queens
-        board[7][3].setPiece(new Queen(PieceColor.WHITE));
-        board[0][3].setPiece(new Queen(PieceColor.BLACK));
-        // kings
-        board[7][4].setPiece(new King(PieceColor.WHITE));
-        board[0][4].setPiece(new King(PieceColor.BLACK));
+            board[1][i].setPiece(Pieces.get(PieceColor.BLACK, PieceType.PAWN));
+            board[6][i].setPiece(Pieces.get(PieceColor.WHITE, PieceType.PAWN));
+            // rooks, knights, bishops, queens and kings
+            board[0][i].setPiece(Pieces.get(PieceColor.BLACK, backRank[i]));
+            board[7][i].setPiece(Pieces.get(PieceColor.WHITE, backRank[i]));
+        }
     }
 
     public void makeMove(Move move) {
@@ -59,11 +258,21 @@ public class Board {
     }
 
     public void emptyBoard() {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                board[i][j].setPiece(null);
-            }
-        }
+        Arrays.fill(pieces, null);
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(colorBitboards, 0L);
+        Arrays.fill(kingSquares, -1);
+        occupied = 0L;
+        materialSignature = 0L;
+        attackMapStale = true;
+        sideToMove = PieceColor.WHITE;
+        castlingRights = 0;
+        enPassantSquare = -1;
+        halfmoveClock = 0;
+        zobristKey = 0L;
+        enPassantKey = 0L;
+        plies = 0;
+        hasValidMoves = false;
     }
 
     public void undoMove(Move move) {
@@ -74,115 +283,304 @@ public class Board {
     }
 
     public Square findKingSquare(PieceColor color) {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Square square = board[i][j];
-                if (square.isEmpty()) {
-                    // skip empty squares;
-                    continue;
-                }
-                Piece piece = square.getPiece();
-                if (piece.getType() == PieceType.KING
-                        && piece.getColor() == color) {
-                    return square;
-                }
-            }
+        int kingSquare = getKingSquare(color);
+        if (kingSquare == -1) {
+            return null;
         }
-        return null;
+        return getSquare(kingSquare);
     }
 
 
     public boolean isCheck(PieceColor color) {
-        Square kingSquare = findKingSquare(color);
-        if (kingSquare == null) {
+        int kingSquare = getKingSquare(color);
+        if (kingSquare == -1) {
             return false;
         }
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Square square = board[i][j];
-                if (square.isEmpty()) {
-                    // skip empty squares;
-                    continue;
-                }
-                Piece piece = square.getPiece();
-                if (piece.getColor() == color) {
-                    // skip pieces of the same color
-                    continue;
-                }
-                Move moveToKing = new Move(square, kingSquare);
-                if (MoveValidator.isPossibleMove(this, moveToKing)) {
-                    return true;
-                }
-            }
+        return isSquareAttacked(kingSquare, color.opposite());
+    }
+
+    // a lookup in the attack map, which setPiece keeps current
+    public boolean isSquareAttacked(int square, PieceColor byColor) {
+        return Bitboards.contains(getAttackedSquares(byColor), square);
+    }
+
+    public boolean isSquareAttacked(Square square, PieceColor byColor) {
+        return isSquareAttacked(square.getIndex(), byColor);
+    }
+
+    // every square attacked by at least one piece of the color
+    public long getAttackedSquares(PieceColor byColor) {
+        updateAttackMap();
+        return attackMap.getAttackedSquares(byColor);
+    }
+
+    // number of pieces of the color attacking (or defending) a square
+    public int getAttackCount(int square, PieceColor byColor) {
+        updateAttackMap();
+        return attackMap.getAttackCount(square, byColor);
+    }
+
+    private void updateAttackMap() {
+        if (attackMapStale) {
+            attackMap.rebuild(this);
+            attackMapStale = false;
+        }
+    }
+
+    // all pieces of the given color attacking a square, sliders see through the given occupancy
+    // instead of the current one so callers can ask "what if" questions without changing the board
+    public long getAttackers(int square, PieceColor byColor, long occupancy) {
+        long queens = getBitboard(byColor, PieceType.QUEEN);
+        return (Attacks.pawn(byColor.opposite(), square) & getBitboard(byColor, PieceType.PAWN))
+                | (Attacks.knight(square) & getBitboard(byColor, PieceType.KNIGHT))
+                | (Attacks.king(square) & getBitboard(byColor, PieceType.KING))
+                | (Attacks.bishop(square, occupancy) & (getBitboard(byColor, PieceType.BISHOP) | queens))
+                | (Attacks.rook(square, occupancy) & (getBitboard(byColor, PieceType.ROOK) | queens));
+    }
+
+    // pieces of the color that may only move along the line through their own king
+    public long getPinnedPieces(PieceColor color) {
+        int kingSquare = getKingSquare(color);
+        if (kingSquare == -1) {
+            return 0L;
         }
-        return false;
+        return MoveGenerator.getPinnedPieces(this, kingSquare, color, color.opposite());
     }
 
     // excluding en passant and castling
     public ArrayList<Move> generateAllValidNormalMoves(PieceColor color) {
-        ArrayList<Move> res = new ArrayList<>();
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Square square = getSquare(i, j);
-                if (square.isEmpty()) {
-                    // skip empty squares;
-                    continue;
-                }
-                if (square.getPiece().getColor() != color) {
-                    // ignore pieces of the opposite color
-                    continue;
-                }
-                for (int k = 0; k < 8; k++) {
-                    for (int l = 0; l < 8; l++) {
-                        Square otherSquare = getSquare(k, l);
-                        Move move = new Move(square, otherSquare);
-                        if (MoveValidator.isValidNormalMove(this, move)) {
-                            res.add(move);
-                        }
-                    }
-                }
-            }
-        }
-        return res;
+        return MoveGenerator.generateMoves(this, color, null);
     }
 
     // including en passant and castling
     public ArrayList<Move> generateAllValidMoves(PieceColor color, MoveHistory history) {
-        ArrayList<Move> res = new ArrayList<>();
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Square square = getSquare(i, j);
-                if (square.isEmpty()) {
-                    // skip empty squares;
-                    continue;
-                }
-                if (square.getPiece().getColor() != color) {
-                    // ignore pieces of the opposite color
-                    continue;
-                }
-                for (int k = 0; k < 8; k++) {
-                    for (int l = 0; l < 8; l++) {
-                        Square otherSquare = getSquare(k, l);
-                        Move move = new Move(square, otherSquare);
-                        if (MoveValidator.isValidMove(this, move, history)) {
-                            res.add(move);
-                        }
-                    }
+        // the board tracks the en passant square itself, the history only matters for the other color
+        if (color == sideToMove && history != null) {
+            return MoveGenerator.toMoves(this, getValidMoves());
+        }
+        return MoveGenerator.generateMoves(this, color, history);
+    }
+
+    // legal moves of the side to move as packed ints, including en passant and castling
+    // the list is cached until the position changes and must not be modified by the caller
+    public MoveList getValidMoves() {
+        if (!hasValidMoves || validMovesKey != zobristKey) {
+            validMoves.clear();
+            MoveGenerator.generateLegalMoves(this, sideToMove, enPassantSquare, true, validMoves);
+            validMovesKey = zobristKey;
+            hasValidMoves = true;
+        }
+        return validMoves;
+    }
+
+    // legal moves of the side to move, generated lazily in stages: captures and promotions first, then quiet moves
+    public MoveIterator iterateValidMoves() {
+        return new MoveIterator(this, sideToMove, enPassantSquare, true);
+    }
+
+    // whether the color has at least one legal move, answered from the cached list if there is one
+    public boolean hasAnyLegalMove(PieceColor color) {
+        if (color == sideToMove && hasValidMoves && validMovesKey == zobristKey) {
+            return !validMoves.isEmpty();
+        }
+        int enPassant = (color == sideToMove) ? enPassantSquare : -1;
+        return MoveGenerator.hasAnyLegalMove(this, color, enPassant);
+    }
+
+    // boxes a packed move for the UI and history
+    public Move toMove(int packedMove) {
+        Move move = new Move(getSquare(PackedMove.getFrom(packedMove)), getSquare(PackedMove.getTo(packedMove)));
+        move.setMoveType(PackedMove.getMoveType(packedMove));
+        move.setPromotionPieceType(PackedMove.getPromotionType(packedMove));
+        return move;
+    }
+
+    // plays a move whose type is already set and updates the position state,
+    // the state it overwrites goes on the stack for takeBackMove
+    public void playMove(Move move) {
+        pushState();
+        switch (move.getMoveType()) {
+            case CASTLING -> performCastling(move);
+            case PROMOTION -> promotePawn(move, move.getPromotionPieceType());
+            case EN_PASSANT -> performEnPassant(move);
+            default -> makeMove(move);
+        }
+        stateStack[plies++] = packState(move.getCapturedPiece());
+        boolean isPawnMove = move.getMovingPiece().getType() == PieceType.PAWN;
+        advanceState(move.getFromSquare().getIndex(), move.getToSquare().getIndex(), isPawnMove, move.isCapture());
+    }
+
+    // packed counterpart of playMove for perft and analysis, no Move or Square objects are touched
+    public void playMove(int move) {
+        pushState();
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        Piece movingPiece = pieces[from];
+        Piece capturedPiece;
+        switch (PackedMove.getMoveType(move)) {
+            case CASTLING -> {
+                capturedPiece = null;
+                setPiece(to, movingPiece);
+                setPiece(from, null);
+                // the rook jumps to the square the king passed over
+                int rookFrom = (to > from) ? from + 3 : from - 4;
+                setPiece((from + to) / 2, pieces[rookFrom]);
+                setPiece(rookFrom, null);
+            }
+            case EN_PASSANT -> {
+                int capturedSquare = Bitboards.square(Bitboards.xOf(from), Bitboards.yOf(to));
+                capturedPiece = pieces[capturedSquare];
+                setPiece(capturedSquare, null);
+                setPiece(to, movingPiece);
+                setPiece(from, null);
+            }
+            case PROMOTION -> {
+                capturedPiece = pieces[to];
+                setPiece(to, Pieces.get(movingPiece.getColor(), PackedMove.getPromotionType(move)));
+                setPiece(from, null);
+            }
+            default -> {
+                capturedPiece = pieces[to];
+                setPiece(to, movingPiece);
+                setPiece(from, null);
+            }
+        }
+        stateStack[plies++] = packState(capturedPiece);
+        advanceState(from, to, movingPiece.getType() == PieceType.PAWN, capturedPiece != null);
+    }
+
+    private void pushState() {
+        if (plies == stateStack.length) {
+            stateStack = Arrays.copyOf(stateStack, plies * 2);
+            keyStack = Arrays.copyOf(keyStack, plies * 2);
+        }
+        keyStack[plies] = zobristKey;
+    }
+
+    private void advanceState(int from, int to, boolean isPawnMove, boolean isCapture) {
+        int newHalfmoveClock = (isPawnMove || isCapture) ? 0 : halfmoveClock + 1;
+        int newCastlingRights = castlingRights & CASTLING_RIGHTS_MASKS[from] & CASTLING_RIGHTS_MASKS[to];
+        int newEnPassantSquare = (isPawnMove && Math.abs(from - to) == 16) ? (from + to) / 2 : -1;
+        setPositionState(sideToMove.opposite(), newCastlingRights, newEnPassantSquare, newHalfmoveClock);
+    }
+
+    // reverts the last move given to playMove, in constant time
+    public void takeBackMove(Move move) {
+        switch (move.getMoveType()) {
+            case CASTLING -> undoCastling(move);
+            case EN_PASSANT -> undoEnPassant(move);
+            default -> undoMove(move);
+        }
+        popState();
+    }
+
+    // packed counterpart of takeBackMove, the captured piece comes back from the state stack
+    public void takeBackMove(int move) {
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        int captured = stateStack[plies - 1] >>> 27;
+        Piece capturedPiece = (captured == 0) ? null : Pieces.get(captured - 1);
+        // a promoted piece turns back into a pawn
+        Piece movingPiece = PackedMove.isPromotion(move)
+                ? Pieces.get(pieces[to].getColor(), PieceType.PAWN) : pieces[to];
+        switch (PackedMove.getMoveType(move)) {
+            case CASTLING -> {
+                setPiece(from, movingPiece);
+                setPiece(to, null);
+                int rookFrom = (to > from) ? from + 3 : from - 4;
+                setPiece(rookFrom, pieces[(from + to) / 2]);
+                setPiece((from + to) / 2, null);
+            }
+            case EN_PASSANT -> {
+                setPiece(from, movingPiece);
+                setPiece(to, null);
+                setPiece(Bitboards.square(Bitboards.xOf(from), Bitboards.yOf(to)), capturedPiece);
+            }
+            default -> {
+                setPiece(from, movingPiece);
+                setPiece(to, capturedPiece);
+            }
+        }
+        popState();
+    }
+
+    private void popState() {
+        int state = stateStack[--plies];
+        // the pieces are back, so only the state part of the key has to be restored
+        sideToMove = sideToMove.opposite();
+        castlingRights = state & 0xF;
+        enPassantSquare = ((state >>> 4) & 0x7F) - 1;
+        halfmoveClock = (state >>> 11) & 0xFFFF;
+        zobristKey = keyStack[plies];
+        enPassantKey = computeEnPassantKey();
+    }
+
+    // replaces the whole position, e.g. to give each worker thread its own board
+    public void loadPosition(Position position) {
+        emptyBoard();
+        for (PieceColor color : PieceColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                long bitboard = position.getBitboard(color, type);
+                while (bitboard != 0L) {
+                    setPiece(Bitboards.first(bitboard), Pieces.get(color, type));
+                    bitboard &= bitboard - 1;
                 }
             }
         }
-        return res;
+        setPositionState(position.getSideToMove(), position.getCastlingRights(),
+                position.getEnPassantSquare(), position.getHalfmoveClock());
+    }
+
+    // validates and plays a sequence of moves given as from/to square indices and promotion piece types
+    // (null for moves that do not promote, the whole array may be null if none do)
+    // each move is classified once and played packed, nothing is boxed; returns the index of the first
+    // illegal move, which is left unplayed together with the rest, or -1 if all of them were played
+    public int playMoves(int[] from, int[] to, PieceType[] promotions) {
+        for (int i = 0; i < from.length; i++) {
+            PieceType promotion = (promotions != null) ? promotions[i] : null;
+            int move = MoveGenerator.toLegalMove(this, from[i], to[i], promotion);
+            if (move == PackedMove.NONE) {
+                return i;
+            }
+            playMove(move);
+        }
+        return -1;
     }
 
+    // number of moves played with playMove that can still be taken back
+    public int getPlies() {
+        return plies;
+    }
+
+    private int packState(Piece capturedPiece) {
+        int captured = (capturedPiece == null) ? 0 : capturedPiece.getIndex() + 1;
+        return castlingRights
+                | ((enPassantSquare + 1) << 4)
+                | ((halfmoveClock & 0xFFFF) << 11)
+                | (captured << 27);
+    }
+
+    // asks the attack tables about the occupancy after the move instead of playing it,
+    // so the board is never changed and other threads never see a half-made move
     public boolean isSafeAfterMove(Move move) {
-        boolean res;
-        // simulate move
-        makeMove(move);
-        // if king is in check after move then it's not valid
-        res = !isCheck(move.getMovingPiece().getColor());
-        // undo simulated move
-        undoMove(move);
-        return res;
+        Piece movingPiece = move.getMovingPiece();
+        PieceColor color = movingPiece.getColor();
+        int from = move.getFromSquare().getIndex();
+        int to = move.getToSquare().getIndex();
+        int kingSquare = (movingPiece.getType() == PieceType.KING) ? to : getKingSquare(color);
+        if (kingSquare == -1) {
+            return true;
+        }
+        long occupancy = (occupied & ~Bitboards.bit(from)) | Bitboards.bit(to);
+        // a captured piece no longer attacks anything
+        long captured = Bitboards.bit(to);
+        if (movingPiece.getType() == PieceType.PAWN && pieces[to] == null && Bitboards.yOf(from) != Bitboards.yOf(to)) {
+            // en passant, the captured pawn stands beside the destination
+            int capturedSquare = Bitboards.square(Bitboards.xOf(from), Bitboards.yOf(to));
+            occupancy &= ~Bitboards.bit(capturedSquare);
+            captured |= Bitboards.bit(capturedSquare);
+        }
+        return (getAttackers(kingSquare, color.opposite(), occupancy) & ~captured) == 0L;
     }
 
     public void promotePawn(Move move, PieceType newType) {
@@ -192,13 +590,10 @@ public class Board {
         if (move.getMovingPiece().getType() != PieceType.PAWN) {
             return;
         }
-        Piece newPiece = null;
-        switch (newType) {
-            case BISHOP -> newPiece = new Bishop(move.getMovingPiece().getColor());
-            case KNIGHT -> newPiece = new Knight(move.getMovingPiece().getColor());
-            case ROOK -> newPiece = new Rook(move.getMovingPiece().getColor());
-            case QUEEN -> newPiece = new Queen(move.getMovingPiece().getColor());
+        if (newType == PieceType.PAWN || newType == PieceType.KING) {
+            return;
         }
+        Piece newPiece = Pieces.get(move.getMovingPiece().getColor(), newType);
         move.getToSquare().setPiece(newPiece);
         move.getFromSquare().setPiece(null);
     }
@@ -76,23 +76,11 @@ public class ComputerGame extends Game {
             return null;
         }
         if (bestMoveString.length() == 5) {
-            computerMove.setMoveType(MoveType.PROMOTION);
+            // the engine already picked the promotion piece, so makeMove will not ask for one
             PieceType promoteTo = Notation.getPieceTypeFromLetter(bestMoveString.charAt(4));
             computerMove.setPromotionPieceType(promoteTo);
-            getBoard().promotePawn(computerMove, promoteTo);
-            getHistory().addMove(getBoard(), computerMove);
-            if (isTimedGame()) {
-                switchClocks();
-            }
-            updateHalfMoves(computerMove);
-            switchTurns();
-            if (getOnMoveMade() != null) {
-                getOnMoveMade().run();
-            }
-            checkIfGameIsOver();
-        } else {
-            makeMove(computerMove);
         }
+        makeMove(computerMove);
         stockfishThread = null;
         return computerMove;
     }
@@ -1,9 +1,19 @@
 package chess.core;
+import chess.util.FenParser;
+import chess.util.Notation;
 import chess.util.TimerClock;
 
 public class Game {
     private final Board board;
     private final MoveHistory history;
+    // snapshot of the board after the last change, for readers on other threads (painting, analysis)
+    private volatile Snapshot snapshot;
+    // plies played before the history starts, for games set up from FEN
+    private int startingPlies = 0;
+    // FEN of the snapshot it was written for, rebuilt after the next make or undo
+    private final StringBuilder fenBuilder = new StringBuilder(90);
+    private Snapshot fenSnapshot;
+    private String fen;
 
     private TimerClock whiteClock;
     private TimerClock blackClock;
@@ -13,11 +23,8 @@ public class Game {
     private boolean clocksAreRunning = false;
     private boolean isOver = false;
 
-    private PieceColor turn = PieceColor.WHITE;
-    private int halfMoves = 0; // tracking for 50 move rule, draw if it reaches 100
-
     private String winner; // "white", "black" (winning) or "none" (draw)
-    private String gameOverCause; // "checkmate", "50" (fifty move rule), "stalemate", "time"
+    private String gameOverCause; // "checkmate", "50" (fifty move rule), "stalemate", "repetition", "material", "time"
 
     private Thread clockWatcherThread; // thread to check if either of the 2 clocks run out
 
@@ -28,6 +35,8 @@ public class Game {
         board = new Board();
         board.setupPieces();
         history = new MoveHistory();
+        board.setPositionState(PieceColor.WHITE, Board.ALL_CASTLING_RIGHTS, -1, 0);
+        publishPosition();
     }
 
     // timed game
@@ -35,6 +44,8 @@ public class Game {
         board = new Board();
         board.setupPieces();
         history = new MoveHistory();
+        board.setPositionState(PieceColor.WHITE, Board.ALL_CASTLING_RIGHTS, -1, 0);
+        publishPosition();
         this.whiteClock = new TimerClock(whiteTimeMinutes);
         whiteTimerThread = new Thread(whiteClock);
         this.blackClock = new TimerClock(blackTimeMinutes);
@@ -52,6 +63,8 @@ public class Game {
         board = new Board();
         board.setupPieces();
         history = new MoveHistory();
+        board.setPositionState(PieceColor.WHITE, Board.ALL_CASTLING_RIGHTS, -1, 0);
+        publishPosition();
 
         this.whiteClock = new TimerClock(timeMinutes);
         whiteTimerThread = new Thread(whiteClock);
@@ -68,24 +81,22 @@ public class Game {
 
     public boolean makeMove(Move move) {
         // check if piece color aligns with turn
-        if (move.getMovingPiece() != null && move.getMovingPiece().getColor() == turn) {
+        if (move.getMovingPiece() != null && move.getMovingPiece().getColor() == getCurrentTurn()) {
             // check if move is valid
-            if (MoveValidator.isValidMove(board, move, history)) {
+            if (MoveValidator.isValidMove(board, move)) {
                 // determine move type
                 setMoveType(move);
-                // add move to history
-                history.addMove(board, move);
+                if (move.getMoveType() == MoveType.PROMOTION && move.getPromotionPieceType() == null) {
+                    // promotion was cancelled
+                    return false;
+                }
+                // plays the move and adds it to the history
                 if (!executeMove(move)) {
-                    history.undoLastMove();
                     return false;
                 }
-                // switch turns
-                switchTurns();
                 if (onMoveMade != null) {
                     onMoveMade.run();
                 }
-                // set hasMoved to true
-                move.getMovingPiece().setHasMoved(true);
             } else {
                 // is invalid move
                 return false;
@@ -100,8 +111,6 @@ public class Game {
                 }
                 switchClocks();
             }
-            // update half move count, reset if moving piece is a pawn or a capture, else increment
-            updateHalfMoves(move);
             // is valid move
             checkIfGameIsOver();
             return true;
@@ -116,12 +125,16 @@ public class Game {
             move.setMoveType(MoveType.CASTLING);
         } else if (MoveValidator.isValidPromotion(move)) {
             move.setMoveType(MoveType.PROMOTION);
+            if (move.getPromotionPieceType() != null) {
+                // already chosen, e.g. by the engine
+                return;
+            }
             PieceType promoteTo = askForPromotion();
             move.setPromotionPieceType(promoteTo);
             if (promoteTo == null) {
                 return;
             }
-        } else if (MoveValidator.isValidEnPassant(board, move, history)) {
+        } else if (MoveValidator.isValidEnPassant(board, move)) {
             move.setMoveType(MoveType.EN_PASSANT);
         } else {
             if (move.isCapture()) {
@@ -133,46 +146,39 @@ public class Game {
     }
 
     public boolean executeMove(Move move) {
-        switch(move.getMoveType()) {
-            case CASTLING -> {
-                board.performCastling(move);
-            }
-            case PROMOTION -> {
-                board.promotePawn(move, move.getPromotionPieceType());
-            }
-            case EN_PASSANT -> {
-                board.performEnPassant(move);
-            }
-            default -> board.makeMove(move);
-        }
+        // the SAN is written against the board before the move, its check suffix once the new ply's moves are known
+        String algebraicNotation = Notation.moveToAlgebraicNotationWithoutSuffix(board, move);
+        // the board switches the side to move and updates castling rights, en passant and the halfmove clock
+        board.playMove(move);
+        history.addMove(move, algebraicNotation + getCheckSuffix());
+        publishPosition();
         return true;
     }
 
+    // "+" or "#" for the move just played, read from the legal moves of the new ply
+    private String getCheckSuffix() {
+        if (!board.isCheck(getCurrentTurn())) {
+            return "";
+        }
+        return board.getValidMoves().isEmpty() ? "#" : "+";
+    }
+
     public void undoLastMove() {
         if (!history.isEmpty()) {
             // switch clocks back
             if (isTimedGame() && clocksAreRunning) {
                 switchClocks();
             }
-            // switch turns back
-            switchTurns();
             Move lastMove = history.getLastMove();
-            // restore hasMoved flag
-            if (lastMove.isFirstMoveOfPiece()) {
-                lastMove.getMovingPiece().setHasMoved(false);
-            }
-            switch (lastMove.getMoveType()) {
-                case CASTLING -> board.undoCastling(lastMove);
-                case EN_PASSANT -> board.undoEnPassant(lastMove);
-                default -> board.undoMove(lastMove);
-            }
+            // constant time, the board restores the position state from its own stack
+            board.takeBackMove(lastMove);
             history.undoLastMove();
-            restoreHalfMoves();
+            publishPosition();
         }
     }
 
     public void switchClocks() {
-        if (turn == PieceColor.WHITE) {
+        if (getCurrentTurn() == PieceColor.WHITE) {
             whiteClock.resume();
             blackClock.pause();
         } else {
@@ -185,21 +191,32 @@ public class Game {
         return board;
     }
 
+    // never changes once returned, safe to read from any thread
+    public Position getPosition() {
+        return snapshot.position;
+    }
+
+    // legal moves of the side to move in getPosition(), generated once per ply and shared by
+    // mate detection, the SAN check suffix and the board panel; must not be modified
+    public MoveList getLegalMoves() {
+        return snapshot.legalMoves;
+    }
+
     public MoveHistory getHistory() {
         return history;
     }
 
     public PieceColor getCurrentTurn() {
-        return turn;
+        return board.getSideToMove();
     }
 
     public boolean isCheckMate() {
         // has to be in check to be a checkmate
-        if (!board.isCheck(turn)) {
+        if (!board.isCheck(getCurrentTurn())) {
             return false;
         }
         // if there is no valid move then it's checkmate
-        if (board.generateAllValidNormalMoves(turn).isEmpty()) {
+        if (getLegalMoves().isEmpty()) {
             return true;
         }
         return false;
@@ -207,11 +224,11 @@ public class Game {
 
     public boolean isStalemate() {
         // has to not be in check to be a stalemate
-        if (board.isCheck(turn)) {
+        if (board.isCheck(getCurrentTurn())) {
             return false;
         }
         // if there is no valid move then it's stalemate
-        if (board.generateAllValidNormalMoves(turn).isEmpty()) {
+        if (getLegalMoves().isEmpty()) {
             return true;
         }
         return false;
@@ -219,7 +236,7 @@ public class Game {
 
     public boolean checkIfGameIsOver() {
         if (isCheckMate()) {
-            winner = (turn == PieceColor.WHITE) ? "black" : "white";
+            winner = (getCurrentTurn() == PieceColor.WHITE) ? "black" : "white";
             gameOverCause = "checkmate";
             endGame();
             return true;
@@ -228,11 +245,21 @@ public class Game {
             gameOverCause = "stalemate";
             endGame();
             return true;
-        } else if (halfMoves == 100) {
+        } else if (getHalfMoves() >= 100) {
             winner = "none";
             gameOverCause = "50";
             endGame();
             return true;
+        } else if (board.getRepetitionCount() >= 3) {
+            winner = "none";
+            gameOverCause = "repetition";
+            endGame();
+            return true;
+        } else if (board.isInsufficientMaterial()) {
+            winner = "none";
+            gameOverCause = "material";
+            endGame();
+            return true;
         } else if (isTimedGame()) {
             if (blackClock.isFinished()) {
                 winner = "white";
@@ -257,19 +284,56 @@ public class Game {
         history.resetHistory();
         board.emptyBoard();
         board.setupPieces();
-        turn = PieceColor.WHITE;
+        board.setPositionState(PieceColor.WHITE, Board.ALL_CASTLING_RIGHTS, -1, 0);
+        startingPlies = 0;
+        clearGameOver();
+        publishPosition();
     }
 
-    public void switchTurns() {
-        turn = (turn == PieceColor.WHITE) ? PieceColor.BLACK : PieceColor.WHITE;
+    // sets up a position from FEN, the history starts empty from there
+    // an invalid FEN throws IllegalArgumentException and leaves the game unchanged
+    public void loadFEN(String fen) {
+        int fullMoveNumber = FenParser.parse(fen, board);
+        history.resetHistory();
+        startingPlies = (fullMoveNumber - 1) * 2 + ((getCurrentTurn() == PieceColor.BLACK) ? 1 : 0);
+        clearGameOver();
+        publishPosition();
+    }
+
+    // FEN of the current position, written once per ply into a reused builder
+    // built from the snapshot, so it is safe to call while another thread is changing the board
+    public synchronized String getFEN() {
+        Snapshot current = snapshot;
+        if (fenSnapshot != current) {
+            fenBuilder.setLength(0);
+            Notation.appendFEN(current.position, current.fullMoveNumber, fenBuilder);
+            fen = fenBuilder.toString();
+            fenSnapshot = current;
+        }
+        return fen;
     }
 
-    public void updateHalfMoves(Move move) {
-        // update half move count, reset if moving piece is a pawn or a capture, else increment
-        if (move.getMovingPiece().getType() == PieceType.PAWN || move.getMoveType() == MoveType.CAPTURE) {
-            halfMoves = 0;
-        } else {
-            halfMoves++;
+    public int getFullMoveNumber() {
+        return (startingPlies + history.getSize()) / 2 + 1;
+    }
+
+    // called after every change to the board, once the history matches it
+    // the board's cached move list is copied, so it is generated at most once per ply
+    private void publishPosition() {
+        snapshot = new Snapshot(Position.of(board), getFullMoveNumber(), new MoveList(board.getValidMoves()));
+    }
+
+    // the position, its fullmove number and its legal moves, published together so a reader
+    // never sees one without the others
+    private static class Snapshot {
+        private final Position position;
+        private final int fullMoveNumber;
+        private final MoveList legalMoves;
+
+        private Snapshot(Position position, int fullMoveNumber, MoveList legalMoves) {
+            this.position = position;
+            this.fullMoveNumber = fullMoveNumber;
+            this.legalMoves = legalMoves;
         }
     }
 
@@ -291,25 +355,24 @@ public class Game {
     }
 
     public int getHalfMoves() {
-        return halfMoves;
+        return board.getHalfmoveClock();
     }
 
     public String getGameOverCause() {
         return gameOverCause;
     }
 
-    public void restoreHalfMoves() {
-        // expensive way of doing it but will improve later
-        halfMoves = 0;
-        for (Move move : history.getHistory()) {
-            updateHalfMoves(move);
-        }
-    }
-
     public boolean isOver() {
         return isOver;
     }
 
+    // a new position starts a new game, whatever ended the last one
+    private void clearGameOver() {
+        isOver = false;
+        winner = null;
+        gameOverCause = null;
+    }
+
     public void endGame() {
         isOver = true;
         if (isTimedGame()) {
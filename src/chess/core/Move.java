@@ -7,7 +7,6 @@ public class Move {
     private final Piece movingPiece;
     private Piece capturedPiece;
     private MoveType moveType;
-    private final boolean isFirstMoveOfPiece;
 
     private PieceType promotionPieceType;
 
@@ -16,7 +15,6 @@ public class Move {
         this.toSquare = toSquare;
         this.movingPiece = fromSquare.getPiece();
         this.capturedPiece = toSquare.getPiece();
-        this.isFirstMoveOfPiece = movingPiece != null && !movingPiece.hasMoved();
     }
 
     public Square getFromSquare() {
@@ -45,10 +43,6 @@ public class Move {
                 && movingPiece.getColor() != capturedPiece.getColor());
     }
 
-    public boolean isFirstMoveOfPiece() {
-        return isFirstMoveOfPiece;
-    }
-
     public void setPromotionPieceType(PieceType promotionPieceType) {
         this.promotionPieceType = promotionPieceType;
     }
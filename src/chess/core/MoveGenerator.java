@@ -0,0 +1,337 @@
+package chess.core;
+
+import java.util.ArrayList;
+
+// generates moves piece by piece from the attack tables, so only squares a piece can actually reach
+// are visited; moves are written as packed ints into a reusable MoveList
+public final class MoveGenerator {
+    private static final int WHITE_KING_SQUARE = Bitboards.square(7, 4);
+    private static final int BLACK_KING_SQUARE = Bitboards.square(0, 4);
+    static final long PROMOTION_RANKS = Bitboards.RANK_1 | Bitboards.RANK_8;
+
+    private MoveGenerator() {
+    }
+
+    // pseudo-legal destinations of the piece on the given square: the piece's own movement rules
+    // only, en passant and castling are not included and the own king may be left in check
+    public static long getTargets(Board board, int square) {
+        Piece piece = board.getPiece(square);
+        if (piece == null) {
+            return 0L;
+        }
+        PieceColor color = piece.getColor();
+        long own = board.getOccupancy(color);
+        long occupancy = board.getOccupancy();
+        return switch (piece.getType()) {
+            case PAWN -> getPawnTargets(color, square, occupancy, occupancy & ~own);
+            case KNIGHT -> Attacks.knight(square) & ~own;
+            case BISHOP -> Attacks.bishop(square, occupancy) & ~own;
+            case ROOK -> Attacks.rook(square, occupancy) & ~own;
+            case QUEEN -> Attacks.queen(square, occupancy) & ~own;
+            case KING -> Attacks.king(square) & ~own;
+        };
+    }
+
+    private static long getPawnTargets(PieceColor color, int square, long occupancy, long opponents) {
+        long res = Attacks.pawn(color, square) & opponents;
+        int step = (color == PieceColor.WHITE) ? -8 : 8;
+        int oneStep = square + step;
+        if (oneStep < 0 || oneStep > 63 || Bitboards.contains(occupancy, oneStep)) {
+            return res;
+        }
+        res |= Bitboards.bit(oneStep);
+        // double push from the starting rank
+        int startRank = (color == PieceColor.WHITE) ? 6 : 1;
+        if (Bitboards.xOf(square) == startRank && !Bitboards.contains(occupancy, oneStep + step)) {
+            res |= Bitboards.bit(oneStep + step);
+        }
+        return res;
+    }
+
+    // own pieces that are the only blocker between the king and an enemy slider
+    static long getPinnedPieces(Board board, int kingSquare, PieceColor color, PieceColor opponentColor) {
+        long occupancy = board.getOccupancy();
+        long queens = board.getBitboard(opponentColor, PieceType.QUEEN);
+        long snipers = (Attacks.rook(kingSquare, 0L) & (board.getBitboard(opponentColor, PieceType.ROOK) | queens))
+                | (Attacks.bishop(kingSquare, 0L) & (board.getBitboard(opponentColor, PieceType.BISHOP) | queens));
+        long pinned = 0L;
+        while (snipers != 0L) {
+            int sniper = Bitboards.first(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.between(kingSquare, sniper) & occupancy;
+            if (Bitboards.count(blockers) == 1) {
+                pinned |= blockers & board.getOccupancy(color);
+            }
+        }
+        return pinned;
+    }
+
+    // en passant removes two pieces from the same rank, so it gets its own check instead of the pin mask
+    static boolean isSafeEnPassant(Board board, int from, int to, int kingSquare, PieceColor opponentColor) {
+        int capturedSquare = Bitboards.square(Bitboards.xOf(from), Bitboards.yOf(to));
+        long occupancy = (board.getOccupancy() ^ Bitboards.bit(from) ^ Bitboards.bit(capturedSquare)) | Bitboards.bit(to);
+        long attackers = board.getAttackers(kingSquare, opponentColor, occupancy) & ~Bitboards.bit(capturedSquare);
+        return attackers == 0L;
+    }
+
+    // square passed over by the last move if it was a double pawn push, -1 otherwise
+    public static int getEnPassantSquare(MoveHistory history) {
+        if (history == null || history.isEmpty()) {
+            return -1;
+        }
+        Move lastMove = history.getLastMove();
+        if (!MoveValidator.isDoublePawnPush(lastMove)) {
+            return -1;
+        }
+        return (lastMove.getFromSquare().getIndex() + lastMove.getToSquare().getIndex()) / 2;
+    }
+
+    // all legal moves of one side, en passant and castling are only included when a history is given
+    // boxed into Move objects for the UI and history, promotions appear once per from/to pair as a queen promotion
+    public static ArrayList<Move> generateMoves(Board board, PieceColor color, MoveHistory history) {
+        MoveList moves = new MoveList();
+        int enPassantSquare = (history != null) ? getEnPassantSquare(history) : -1;
+        generateLegalMoves(board, color, enPassantSquare, history != null, moves);
+        return toMoves(board, moves);
+    }
+
+    // boxes packed moves, promotions appear once per from/to pair as a queen promotion
+    public static ArrayList<Move> toMoves(Board board, MoveList moves) {
+        ArrayList<Move> res = new ArrayList<>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (PackedMove.isPromotion(move) && PackedMove.getPromotionType(move) != PieceType.QUEEN) {
+                continue;
+            }
+            res.add(board.toMove(move));
+        }
+        return res;
+    }
+
+    // squares a move other than a king move has to land on: anywhere when not in check,
+    // the checker or a square between it and the king in single check, nowhere in double check
+    static long getCheckMask(Board board, int kingSquare, PieceColor opponentColor) {
+        if (kingSquare == -1) {
+            return ~0L;
+        }
+        long checkers = board.getAttackers(kingSquare, opponentColor, board.getOccupancy());
+        if (checkers == 0L) {
+            return ~0L;
+        }
+        if (Bitboards.count(checkers) > 1) {
+            return 0L;
+        }
+        return Attacks.between(kingSquare, Bitboards.first(checkers)) | checkers;
+    }
+
+    // appends all legal moves of one side to the list
+    // checkers and pinned pieces are computed once, after that each destination is legal
+    // if it is inside the check mask and, for a pinned piece, on the line through the king
+    public static void generateLegalMoves(Board board, PieceColor color, int enPassantSquare,
+                                          boolean includeCastling, MoveList moves) {
+        PieceColor opponentColor = color.opposite();
+        long opponents = board.getOccupancy(opponentColor);
+        int kingSquare = board.getKingSquare(color);
+
+        long checkMask = getCheckMask(board, kingSquare, opponentColor);
+        long pinned = (kingSquare != -1) ? getPinnedPieces(board, kingSquare, color, opponentColor) : 0L;
+
+        long own = board.getOccupancy(color);
+        while (own != 0L) {
+            int from = Bitboards.first(own);
+            own &= own - 1;
+            Piece piece = board.getPiece(from);
+            long targets = getLegalTargets(board, from, kingSquare, checkMask, pinned);
+            if (piece.getType() == PieceType.PAWN) {
+                addPawnMoves(from, targets, opponents, moves);
+                if (isLegalEnPassant(board, from, enPassantSquare, kingSquare)) {
+                    moves.add(PackedMove.encode(from, enPassantSquare, MoveType.EN_PASSANT, true));
+                }
+                continue;
+            }
+            while (targets != 0L) {
+                int to = Bitboards.first(targets);
+                targets &= targets - 1;
+                boolean isCapture = Bitboards.contains(opponents, to);
+                moves.add(PackedMove.encode(from, to, isCapture ? MoveType.CAPTURE : MoveType.NORMAL, isCapture));
+            }
+            if (includeCastling && from == kingSquare && from == (piece.isWhite() ? WHITE_KING_SQUARE : BLACK_KING_SQUARE)) {
+                addCastling(board, from, from + 2, moves);
+                addCastling(board, from, from - 2, moves);
+            }
+        }
+    }
+
+    // legal destinations of the piece on a square, en passant and castling aside: the king may not step
+    // onto an attacked square, any other piece has to land inside the check mask, a pinned one also on
+    // the line through its king; the one legality rule shared by every generator
+    static long getLegalTargets(Board board, int from, int kingSquare, long checkMask, long pinned) {
+        return filterLegalTargets(board, from, getTargets(board, from), kingSquare, checkMask, pinned);
+    }
+
+    // the same rule applied to some of the piece's pseudo-legal destinations only,
+    // e.g. its captures, so the king's squares that are not asked about are never tested
+    static long filterLegalTargets(Board board, int from, long targets, int kingSquare, long checkMask, long pinned) {
+        if (from == kingSquare) {
+            // the king no longer blocks rays to the squares behind it
+            PieceColor opponentColor = board.getPiece(from).getColor().opposite();
+            long withoutKing = board.getOccupancy() ^ Bitboards.bit(kingSquare);
+            long res = 0L;
+            while (targets != 0L) {
+                int to = Bitboards.first(targets);
+                targets &= targets - 1;
+                if (board.getAttackers(to, opponentColor, withoutKing) == 0L) {
+                    res |= Bitboards.bit(to);
+                }
+            }
+            return res;
+        }
+        targets &= checkMask;
+        if (Bitboards.contains(pinned, from)) {
+            targets &= Attacks.line(kingSquare, from);
+        }
+        return targets;
+    }
+
+    // whether the pawn on a square can legally capture en passant
+    static boolean isLegalEnPassant(Board board, int from, int enPassantSquare, int kingSquare) {
+        if (enPassantSquare == -1) {
+            return false;
+        }
+        PieceColor color = board.getPiece(from).getColor();
+        return Bitboards.contains(Attacks.pawn(color, from), enPassantSquare)
+                && (kingSquare == -1 || isSafeEnPassant(board, from, enPassantSquare, kingSquare, color.opposite()));
+    }
+
+    // stops at the first legal move instead of generating them all, for mate and stalemate detection
+    // the king goes first since it is the only piece that may move in double check, then the pieces
+    // from the cheapest up; castling is never needed since a legal castling implies a legal king step
+    public static boolean hasAnyLegalMove(Board board, PieceColor color, int enPassantSquare) {
+        PieceColor opponentColor = color.opposite();
+        int kingSquare = board.getKingSquare(color);
+        if (kingSquare != -1) {
+            // one step at a time, so the first safe square ends the search
+            long steps = getTargets(board, kingSquare);
+            while (steps != 0L) {
+                long step = steps & -steps;
+                steps ^= step;
+                if (filterLegalTargets(board, kingSquare, step, kingSquare, ~0L, 0L) != 0L) {
+                    return true;
+                }
+            }
+        }
+        long checkMask = getCheckMask(board, kingSquare, opponentColor);
+        if (checkMask == 0L) {
+            // double check and the king cannot move
+            return false;
+        }
+        long pinned = (kingSquare != -1) ? getPinnedPieces(board, kingSquare, color, opponentColor) : 0L;
+        // PieceType is declared from the pawn up
+        for (PieceType type : PieceType.values()) {
+            if (type == PieceType.KING) {
+                continue;
+            }
+            long pieces = board.getBitboard(color, type);
+            while (pieces != 0L) {
+                int from = Bitboards.first(pieces);
+                pieces &= pieces - 1;
+                if (getLegalTargets(board, from, kingSquare, checkMask, pinned) != 0L) {
+                    return true;
+                }
+                if (type == PieceType.PAWN && isLegalEnPassant(board, from, enPassantSquare, kingSquare)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // the legal packed move of the side to move matching a from/to square pair and promotion piece type,
+    // or PackedMove.NONE if there is none; the move is classified here once so it can be played directly
+    // a promotion type is required exactly when a pawn reaches the last rank
+    public static int toLegalMove(Board board, int from, int to, PieceType promotion) {
+        if (from < 0 || from > 63 || to < 0 || to > 63) {
+            return PackedMove.NONE;
+        }
+        Piece piece = board.getPiece(from);
+        PieceColor color = board.getSideToMove();
+        if (piece == null || piece.getColor() != color) {
+            return PackedMove.NONE;
+        }
+        PieceColor opponentColor = color.opposite();
+        int kingSquare = board.getKingSquare(color);
+        long occupancy = board.getOccupancy();
+        boolean isCapture = Bitboards.contains(board.getOccupancy(opponentColor), to);
+        PieceType type = piece.getType();
+
+        if (type == PieceType.KING && (to == from + 2 || to == from - 2)) {
+            return (promotion == null && MoveValidator.isValidCastling(board, from, to))
+                    ? PackedMove.encode(from, to, MoveType.CASTLING, false) : PackedMove.NONE;
+        }
+        if (type == PieceType.PAWN && to == board.getEnPassantSquare() && Bitboards.contains(Attacks.pawn(color, from), to)) {
+            if (promotion != null || (kingSquare != -1 && !isSafeEnPassant(board, from, to, kingSquare, opponentColor))) {
+                return PackedMove.NONE;
+            }
+            return PackedMove.encode(from, to, MoveType.EN_PASSANT, true);
+        }
+        if (!Bitboards.contains(getTargets(board, from), to)) {
+            return PackedMove.NONE;
+        }
+        // the own king may not be attacked once the piece has moved, a captured piece attacks nothing
+        int safeSquare = (type == PieceType.KING) ? to : kingSquare;
+        if (safeSquare != -1) {
+            long occupancyAfter = (occupancy ^ Bitboards.bit(from)) | Bitboards.bit(to);
+            if ((board.getAttackers(safeSquare, opponentColor, occupancyAfter) & ~Bitboards.bit(to)) != 0L) {
+                return PackedMove.NONE;
+            }
+        }
+        boolean isPromotion = type == PieceType.PAWN && Bitboards.contains(PROMOTION_RANKS, to);
+        if (isPromotion != (promotion != null)) {
+            return PackedMove.NONE;
+        }
+        if (isPromotion) {
+            if (promotion == PieceType.PAWN || promotion == PieceType.KING) {
+                return PackedMove.NONE;
+            }
+            return PackedMove.encodePromotion(from, to, promotion, isCapture);
+        }
+        return PackedMove.encode(from, to, isCapture ? MoveType.CAPTURE : MoveType.NORMAL, isCapture);
+    }
+
+    // destinations of the castling moves a king on its home square can make
+    static long getCastlingTargets(Board board, int kingSquare) {
+        if (kingSquare != (board.getPiece(kingSquare).isWhite() ? WHITE_KING_SQUARE : BLACK_KING_SQUARE)) {
+            return 0L;
+        }
+        long res = 0L;
+        if (MoveValidator.isValidCastling(board, kingSquare, kingSquare + 2)) {
+            res |= Bitboards.bit(kingSquare + 2);
+        }
+        if (MoveValidator.isValidCastling(board, kingSquare, kingSquare - 2)) {
+            res |= Bitboards.bit(kingSquare - 2);
+        }
+        return res;
+    }
+
+    private static void addPawnMoves(int from, long targets, long opponents, MoveList moves) {
+        while (targets != 0L) {
+            int to = Bitboards.first(targets);
+            targets &= targets - 1;
+            boolean isCapture = Bitboards.contains(opponents, to);
+            if (Bitboards.contains(PROMOTION_RANKS, to)) {
+                moves.add(PackedMove.encodePromotion(from, to, PieceType.QUEEN, isCapture));
+                moves.add(PackedMove.encodePromotion(from, to, PieceType.ROOK, isCapture));
+                moves.add(PackedMove.encodePromotion(from, to, PieceType.BISHOP, isCapture));
+                moves.add(PackedMove.encodePromotion(from, to, PieceType.KNIGHT, isCapture));
+            } else {
+                moves.add(PackedMove.encode(from, to, isCapture ? MoveType.CAPTURE : MoveType.NORMAL, isCapture));
+            }
+        }
+    }
+
+    private static void addCastling(Board board, int from, int to, MoveList moves) {
+        if (MoveValidator.isValidCastling(board, from, to)) {
+            moves.add(PackedMove.encode(from, to, MoveType.CASTLING, false));
+        }
+    }
+}
@@ -20,6 +20,11 @@ public class MoveHistory {
     }
 
     public void addMove(Board board, Move move) {
+        addMove(move, Notation.moveToAlgebraicNotation(board, move));
+    }
+
+    // the SAN is written by the caller, e.g. with a check suffix it already knows
+    public void addMove(Move move, String algebraicNotation) {
         history.add(move);
         // update history string
         String index = "";
@@ -27,8 +32,9 @@ public class MoveHistory {
             // move index
             index += (history.size() / 2 + 1) + ". ";
         }
-        historyString.add(index + Notation.moveToAlgebraicNotation(board, move) + ' ');
-        unicodeHistoryString.add(index + Notation.moveToUnicodeAlgebraicNotation(board, move) + ' ');
+        // the Unicode form only swaps the piece letters
+        historyString.add(index + algebraicNotation + ' ');
+        unicodeHistoryString.add(index + Notation.algebraicToUnicode(algebraicNotation) + ' ');
     }
 
     public void undoLastMove() {
@@ -83,6 +89,8 @@ public class MoveHistory {
 
     public void resetHistory() {
         history.clear();
+        historyString.clear();
+        unicodeHistoryString.clear();
     }
 
     public int getSize() {
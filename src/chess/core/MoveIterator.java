@@ -0,0 +1,128 @@
+package chess.core;
+
+import java.util.NoSuchElementException;
+
+// hands out the legal moves of one side one at a time as packed ints, captures and promotions before
+// quiet moves; nothing is generated ahead: each piece's destinations for the current stage are worked out
+// when the previous piece is used up, and only those are run through MoveGenerator.filterLegalTargets,
+// so callers that stop early skip the rest of the work and no move buffer is needed
+public class MoveIterator {
+    private static final int CAPTURES = 0;
+    private static final int QUIETS = 1;
+    private static final PieceType[] PROMOTION_TYPES = {PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT};
+
+    private final Board board;
+    private final PieceColor color;
+    private final int enPassantSquare;
+    private final boolean includeCastling;
+    private final long opponents;
+
+    // computed once for both stages
+    private final int kingSquare;
+    private final long checkMask;
+    private final long pinned;
+
+    private int stage = CAPTURES;
+    // pieces not looked at yet in the current stage
+    private long pieces;
+    // the piece whose moves are being handed out and its legal destinations left
+    private int from;
+    private boolean isPawn;
+    private long targets;
+    // en passant or castling destinations of that piece, legal already, and their move type
+    private long specialTargets;
+    private MoveType specialType;
+    // promotion pieces left for the current pawn destination, queen first
+    private int promotionTo;
+    private boolean promotionCapture;
+    private int promotionsLeft = 0;
+    // found by hasNext and not handed out yet, PackedMove.NONE if there is none
+    private int next = PackedMove.NONE;
+
+    MoveIterator(Board board, PieceColor color, int enPassantSquare, boolean includeCastling) {
+        this.board = board;
+        this.color = color;
+        this.enPassantSquare = enPassantSquare;
+        this.includeCastling = includeCastling;
+        PieceColor opponentColor = color.opposite();
+        opponents = board.getOccupancy(opponentColor);
+        kingSquare = board.getKingSquare(color);
+        checkMask = MoveGenerator.getCheckMask(board, kingSquare, opponentColor);
+        pinned = (kingSquare != -1) ? MoveGenerator.getPinnedPieces(board, kingSquare, color, opponentColor) : 0L;
+        pieces = board.getOccupancy(color);
+    }
+
+    public boolean hasNext() {
+        if (next == PackedMove.NONE) {
+            next = findNext();
+        }
+        return next != PackedMove.NONE;
+    }
+
+    public int nextMove() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int move = next;
+        next = PackedMove.NONE;
+        return move;
+    }
+
+    private int findNext() {
+        while (true) {
+            if (promotionsLeft > 0) {
+                PieceType promotion = PROMOTION_TYPES[PROMOTION_TYPES.length - promotionsLeft--];
+                return PackedMove.encodePromotion(from, promotionTo, promotion, promotionCapture);
+            }
+            if (targets != 0L) {
+                int to = Bitboards.first(targets);
+                targets &= targets - 1;
+                boolean isCapture = Bitboards.contains(opponents, to);
+                if (isPawn && Bitboards.contains(MoveGenerator.PROMOTION_RANKS, to)) {
+                    promotionTo = to;
+                    promotionCapture = isCapture;
+                    promotionsLeft = PROMOTION_TYPES.length;
+                    continue;
+                }
+                return PackedMove.encode(from, to, isCapture ? MoveType.CAPTURE : MoveType.NORMAL, isCapture);
+            }
+            if (specialTargets != 0L) {
+                int to = Bitboards.first(specialTargets);
+                specialTargets &= specialTargets - 1;
+                return PackedMove.encode(from, to, specialType, specialType == MoveType.EN_PASSANT);
+            }
+            if (pieces == 0L) {
+                if (stage == QUIETS) {
+                    return PackedMove.NONE;
+                }
+                stage = QUIETS;
+                pieces = board.getOccupancy(color);
+                continue;
+            }
+            from = Bitboards.first(pieces);
+            pieces &= pieces - 1;
+            loadTargets();
+        }
+    }
+
+    // the current stage's destinations of the piece on from, then the legality masks on just those
+    private void loadTargets() {
+        isPawn = board.getPiece(from).getType() == PieceType.PAWN;
+        long pseudoTargets = MoveGenerator.getTargets(board, from);
+        if (stage == CAPTURES) {
+            // pushes onto the last rank are promotions and belong to this stage too
+            pseudoTargets &= isPawn ? (opponents | MoveGenerator.PROMOTION_RANKS) : opponents;
+            specialType = MoveType.EN_PASSANT;
+            specialTargets = (isPawn && MoveGenerator.isLegalEnPassant(board, from, enPassantSquare, kingSquare))
+                    ? Bitboards.bit(enPassantSquare) : 0L;
+        } else {
+            pseudoTargets &= ~board.getOccupancy();
+            if (isPawn) {
+                pseudoTargets &= ~MoveGenerator.PROMOTION_RANKS;
+            }
+            specialType = MoveType.CASTLING;
+            specialTargets = (includeCastling && from == kingSquare) ? MoveGenerator.getCastlingTargets(board, from) : 0L;
+        }
+        targets = MoveGenerator.filterLegalTargets(board, from, pseudoTargets, kingSquare, checkMask, pinned);
+    }
+}
@@ -0,0 +1,58 @@
+package chess.core;
+
+import java.util.Arrays;
+
+// growable buffer of packed moves, meant to be cleared and reused instead of reallocated
+public class MoveList {
+    // no legal chess position has more than 218 moves
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        moves = new int[DEFAULT_CAPACITY];
+    }
+
+    // a copy holding just the other list's moves, e.g. to publish a list that the owner goes on reusing
+    public MoveList(MoveList other) {
+        moves = Arrays.copyOf(other.moves, other.size);
+        size = other.size;
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, Math.max(size * 2, DEFAULT_CAPACITY));
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int i) {
+        return moves[i];
+    }
+
+    public void set(int i, int move) {
+        moves[i] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,8 +1,9 @@
 package chess.core;
 
-import java.util.ArrayList;
-
 public class MoveValidator {
+    private static final int WHITE_KING_SQUARE = Bitboards.square(7, 4);
+    private static final int BLACK_KING_SQUARE = Bitboards.square(0, 4);
+
     public static boolean isValidNormalMove(Board board, Move move) {
         // check if piece can move to destination
         if (!isPossibleMove(board, move)) {
@@ -35,9 +36,9 @@ public class MoveValidator {
         return true;
     }
 
-    public static boolean isValidMove(Board board, Move move, MoveHistory history) {
+    public static boolean isValidMove(Board board, Move move) {
         return ((isValidNormalMove(board, move)
-                || isValidEnPassant(board, move, history)
+                || isValidEnPassant(board, move)
                 || isValidCastling(board, move))
                 && board.isSafeAfterMove(move));
     }
@@ -47,73 +48,31 @@ public class MoveValidator {
         Square fromSquare = move.getFromSquare();
         Square toSquare = move.getToSquare();
         Piece movingPiece = move.getMovingPiece();
-        int xDirection = Integer.compare(toSquare.getX(), fromSquare.getX());
-        int yDirection = Integer.compare(toSquare.getY(), fromSquare.getY()); // -1, 0, or 1
-        switch(movingPiece.getType()) {
+        int from = fromSquare.getIndex();
+        long occupancy = board.getOccupancy();
+        // sliders: the path is clear iff the destination is in the attack set for the current occupancy
+        long reachable;
+        switch (movingPiece.getType()) {
             case PAWN:
                 if (fromSquare.xDistanceTo(toSquare) == 2) {
                     // check if the square in between is empty
-                    Square middleSquare = board.getSquare(fromSquare.getX() + xDirection, fromSquare.getY());
-                    return (middleSquare.isOccupied());
+                    int middle = (from + toSquare.getIndex()) / 2;
+                    return Bitboards.contains(occupancy, middle);
                 }
-                break;
+                return false;
             case BISHOP:
-                for (int i = fromSquare.getX() + xDirection, j = fromSquare.getY() + yDirection;
-                     i != toSquare.getX();
-                     i += xDirection, j += yDirection) {
-
-                    if (board.getSquare(i, j).isOccupied()) {
-                        return true;
-                    }
-                }
+                reachable = Attacks.bishop(from, occupancy);
                 break;
             case ROOK:
-                if (xDirection == 0) {
-                    for (int i = fromSquare.getY() + yDirection;
-                         i != toSquare.getY(); i += yDirection) {
-                        if (board.getSquare(fromSquare.getX(), i).isOccupied()) {
-                            return true;
-                        }
-                    }
-                } else if (yDirection == 0) {
-                    for (int i = fromSquare.getX() + xDirection;
-                         i != toSquare.getX(); i += xDirection) {
-                        if (board.getSquare(i, fromSquare.getY()).isOccupied()) {
-                            return true;
-                        }
-                    }
-                }
+                reachable = Attacks.rook(from, occupancy);
                 break;
             case QUEEN:
-                // bishop part
-                for (int i = fromSquare.getX() + xDirection, j = fromSquare.getY() + yDirection;
-                     i != toSquare.getX();
-                     i += xDirection, j += yDirection) {
-
-                    if (board.getSquare(i, j).isOccupied()) {
-                        return true;
-                    }
-                }
-
-                // rook part
-                if (xDirection == 0) {
-                    for (int i = fromSquare.getY() + yDirection;
-                         i != toSquare.getY(); i += yDirection) {
-                        if (board.getSquare(fromSquare.getX(), i).isOccupied()) {
-                            return true;
-                        }
-                    }
-                } else if (yDirection == 0) {
-                    for (int i = fromSquare.getX() + xDirection;
-                         i != toSquare.getX(); i += xDirection) {
-                        if (board.getSquare(i, fromSquare.getY()).isOccupied()) {
-                            return true;
-                        }
-                    }
-                }
-
+                reachable = Attacks.queen(from, occupancy);
+                break;
+            default:
+                return false;
         }
-        return false;
+        return !Bitboards.contains(reachable, toSquare.getIndex());
     }
 
     public static boolean isDoublePawnPush(Move move) {
@@ -135,32 +94,20 @@ public class MoveValidator {
         return true;
     }
 
-    public static boolean isValidEnPassant(Board board, Move move, MoveHistory history) {
+    // the board keeps the square passed over by a double pawn push, so positions set up from FEN
+    // allow en passant on the first move too
+    public static boolean isValidEnPassant(Board board, Move move) {
         // check if moving piece is a pawn
         if (move.getMovingPiece().getType() != PieceType.PAWN) {
             return false;
         }
-        // check if move is the first move of the game
-        if (history.isEmpty()) {
+        // check if destination is the square the opponent's pawn just passed over
+        int to = move.getToSquare().getIndex();
+        if (to != board.getEnPassantSquare() || move.getMovingPiece().getColor() != board.getSideToMove()) {
             return false;
         }
-        Move lastMove = history.getLastMove();
-        // check if last move is a double pawn push
-        if (!MoveValidator.isDoublePawnPush(lastMove)) {
-            return false;
-        }
-        int xDirection = (move.getMovingPiece().isWhite()) ? -1 : 1;
-        // check if 2 pawns are in the same rank
-        if (move.getFromSquare().getX() != lastMove.getToSquare().getX()) {
-            return false;
-        }
-        // check if capture pattern is correct
-        // check if destination is 1 rank above the opponent's pawn
-        if (!(move.getToSquare().getX() - lastMove.getToSquare().getX() == xDirection)) {
-            return false;
-        }
-        // check if pawn is on the same file as the opponent's captured pawn
-        if (!(move.getToSquare().getY() == lastMove.getToSquare().getY())) {
+        // check if capture pattern is correct (one step diagonally forward, from an adjacent file)
+        if (!Bitboards.contains(Attacks.pawn(move.getMovingPiece().getColor(), move.getFromSquare().getIndex()), to)) {
             return false;
         }
         return board.isSafeAfterMove(move);
@@ -179,112 +126,50 @@ public class MoveValidator {
         if (move.getFromSquare().isEmpty()) {
             return false;
         }
+        return isValidCastling(board, move.getFromSquare().getIndex(), move.getToSquare().getIndex());
+    }
+
+    // castling from attack queries alone: the rights come from the board's position state and the king
+    // may not start on, pass over or land on a square the opponent attacks
+    public static boolean isValidCastling(Board board, int from, int to) {
+        Piece king = board.getPiece(from);
         // ignore non-king pieces
-        if (move.getMovingPiece().getType() != PieceType.KING) {
+        if (king == null || king.getType() != PieceType.KING) {
             return false;
         }
-        // check if king has moved
-        if ((move.getMovingPiece().hasMoved())) {
+        PieceColor side = king.getColor();
+        // the king has to be on its starting square and move two squares along the first rank
+        int kingSquare = (side == PieceColor.WHITE) ? WHITE_KING_SQUARE : BLACK_KING_SQUARE;
+        if (from != kingSquare || (to != from + 2 && to != from - 2)) {
             return false;
         }
-        // check if king is in check
-        if (board.isCheck(move.getMovingPiece().getColor())) {
+        boolean isShortCastle = to > from;
+        if (isShortCastle ? !canCastleKingside(board, side) : !canCastleQueenside(board, side)) {
             return false;
         }
-
-        int fromX = move.getFromSquare().getX();
-        int fromY = move.getFromSquare().getY();
-        int toX = move.getToSquare().getX();
-        int toY = move.getToSquare().getY();
-
-        // check if king is in the first rank
-        if (move.getMovingPiece().isWhite()) {
-            if (!(fromX == 7 && toX == 7)) {
-                return false;
-            }
-        } else {
-            if (!(fromX == 0 && toX == 0)) {
-                return false;
-            }
-        }
-
-        boolean isShortCastle = (fromY == 4 && toY == 6);
-        boolean isLongCastle = (fromY == 4 && toY == 2);
-        if (!isShortCastle && !isLongCastle) {
+        // the rook has to be in its corner with nothing between it and the king
+        int rookSquare = isShortCastle ? from + 3 : from - 4;
+        Piece rook = board.getPiece(rookSquare);
+        if (rook == null || rook.getType() != PieceType.ROOK || rook.getColor() != side
+                || (Attacks.between(from, rookSquare) & board.getOccupancy()) != 0L) {
             return false;
         }
-
-        // check if king is in check after move
-        if (!board.isSafeAfterMove(move)) {
-            return false;
-        }
-
-        int rookY;
-        if (isShortCastle) {
-            rookY = 7;
-        } else {
-            rookY = 0;
-        }
-        Square originalRookSquare = board.getSquare(fromX, rookY);
-        Move rookToKing = new Move(originalRookSquare, move.getFromSquare());
-        // check if square is empty, or piece has moved, or path between the rook and king is blocked
-        if (originalRookSquare.isEmpty()
-                || originalRookSquare.getPiece().hasMoved()
-                || isPathBlocked(board, rookToKing)) {
-            return false;
-        }
-
-        // check if king does not pass through a square that is under attack
-        Square squareToCheck;
-        if (isShortCastle) {
-            squareToCheck = board.getSquare(fromX, 5);
-        } else {
-            squareToCheck = board.getSquare(fromX, 3);
-        }
-        PieceColor opponentColor = (move.getMovingPiece().isWhite()) ? PieceColor.BLACK : PieceColor.WHITE;
-        ArrayList<Move> validMoves = board.generateAllValidNormalMoves(opponentColor);
-        for (Move validMove : validMoves) {
-            if (validMove.getToSquare().equals(squareToCheck)) {
-                return false;
-            }
-        }
-
-        return true;
+        // rays through the king's own square cannot matter, they would already give check
+        PieceColor opponentColor = side.opposite();
+        return !board.isSquareAttacked(from, opponentColor)
+                && !board.isSquareAttacked((from + to) / 2, opponentColor)
+                && !board.isSquareAttacked(to, opponentColor);
     }
 
     // determine if one side can still castle king side
     public static boolean canCastleKingside(Board board, PieceColor side) {
-        Square kingSquare = null;
-        Square kingsideRookSquare = null;
-        if (side == PieceColor.WHITE) {
-            kingSquare = board.getSquare(7, 4);
-            kingsideRookSquare = board.getSquare(7, 7);
-        } else if (side == PieceColor.BLACK) {
-            kingSquare = board.getSquare(0, 4);
-            kingsideRookSquare = board.getSquare(0, 7);
-        }
-        return (kingsideRookSquare.isOccupied()
-                && kingsideRookSquare.isOccupied()
-                && !kingsideRookSquare.getPiece().hasMoved()
-                && kingSquare.isOccupied()
-                && !kingSquare.getPiece().hasMoved());
+        int right = (side == PieceColor.WHITE) ? Board.WHITE_KINGSIDE : Board.BLACK_KINGSIDE;
+        return (board.getCastlingRights() & right) != 0;
     }
 
     // determine if one side can still castle queen side
     public static boolean canCastleQueenside(Board board, PieceColor side) {
-        Square kingSquare = null;
-        Square queensideRookSquare = null;
-        if (side == PieceColor.WHITE) {
-            kingSquare = board.getSquare(7, 4);
-            queensideRookSquare = board.getSquare(7, 0);
-        } else if (side == PieceColor.BLACK) {
-            kingSquare = board.getSquare(0, 4);
-            queensideRookSquare = board.getSquare(0, 0);
-        }
-        return (queensideRookSquare.isOccupied()
-                && queensideRookSquare.isOccupied()
-                && !queensideRookSquare.getPiece().hasMoved()
-                && kingSquare.isOccupied()
-                && !kingSquare.getPiece().hasMoved());
+        int right = (side == PieceColor.WHITE) ? Board.WHITE_QUEENSIDE : Board.BLACK_QUEENSIDE;
+        return (board.getCastlingRights() & right) != 0;
     }
-}
\ No newline at end of file
+}
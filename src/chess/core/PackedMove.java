@@ -0,0 +1,69 @@
+package chess.core;
+
+// int encoding of a move, used by the move generator and search so they do not allocate Move objects
+// bits 0-5: from square, 6-11: to square, 12-14: MoveType ordinal,
+// 15-17: promotion PieceType ordinal + 1 (0 if not a promotion), 18: capture flag
+public final class PackedMove {
+    public static final int NONE = 0;
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int TO_SHIFT = 6;
+    private static final int TYPE_SHIFT = 12;
+    private static final int PROMOTION_SHIFT = 15;
+    private static final int CAPTURE_FLAG = 1 << 18;
+
+    // cached because values() copies the array on every call
+    private static final MoveType[] MOVE_TYPES = MoveType.values();
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    private PackedMove() {
+    }
+
+    public static int encode(int from, int to, MoveType type, boolean isCapture) {
+        return from | (to << TO_SHIFT) | (type.ordinal() << TYPE_SHIFT) | (isCapture ? CAPTURE_FLAG : 0);
+    }
+
+    public static int encodePromotion(int from, int to, PieceType promotionType, boolean isCapture) {
+        return encode(from, to, MoveType.PROMOTION, isCapture) | ((promotionType.ordinal() + 1) << PROMOTION_SHIFT);
+    }
+
+    public static int getFrom(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int getTo(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    public static MoveType getMoveType(int move) {
+        return MOVE_TYPES[(move >>> TYPE_SHIFT) & 7];
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE_FLAG) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return ((move >>> PROMOTION_SHIFT) & 7) != 0;
+    }
+
+    // null if the move is not a promotion
+    public static PieceType getPromotionType(int move) {
+        int promotion = (move >>> PROMOTION_SHIFT) & 7;
+        return (promotion == 0) ? null : PIECE_TYPES[promotion - 1];
+    }
+
+    public static String toString(int move) {
+        StringBuilder res = new StringBuilder(5);
+        appendSquare(res, getFrom(move));
+        appendSquare(res, getTo(move));
+        if (isPromotion(move)) {
+            res.append(getPromotionType(move).getPieceLetter());
+        }
+        return res.toString();
+    }
+
+    private static void appendSquare(StringBuilder res, int square) {
+        res.append((char) ('a' + Bitboards.yOf(square))).append((char) ('1' + 7 - Bitboards.xOf(square)));
+    }
+}
@@ -0,0 +1,169 @@
+package chess.core;
+
+import chess.util.Notation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// counts the leaf nodes of the legal move tree to a fixed depth, the numbers are compared against
+// published results to prove the move generator correct and to measure its speed
+// the last ply is bulk counted: the number of legal moves is the number of leaves below a node
+public class Perft {
+    public static final String STARTING_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    public static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private final Board board;
+    // one reusable move list per ply
+    private final MoveList[] moveLists = new MoveList[64];
+
+    // transposition table for perftHashed, created on first use
+    // each entry stores the position key mixed with the depth and the node count below it
+    private static final int TABLE_BITS = 20;
+    private long[] tableKeys;
+    private long[] tableCounts;
+
+    public Perft(Board board) {
+        this.board = board;
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+    }
+
+    public long perft(int depth) {
+        return perft(depth, 0);
+    }
+
+    private long perft(int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = generate(ply);
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.playMove(move);
+            nodes += perft(depth - 1, ply + 1);
+            board.takeBackMove(move);
+        }
+        return nodes;
+    }
+
+    // node count below each root move, in generation order, keyed by the move in UCI notation
+    public Map<String, Long> divide(int depth) {
+        Map<String, Long> res = new LinkedHashMap<>();
+        MoveList moves = generate(0);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.playMove(move);
+            res.put(PackedMove.toString(move), perft(depth - 1, 1));
+            board.takeBackMove(move);
+        }
+        return res;
+    }
+
+    // same count, but subtrees of positions reached again by a different move order are looked up
+    // instead of searched, which pays off from depth 5 on
+    public long perftHashed(int depth) {
+        if (tableKeys == null) {
+            tableKeys = new long[1 << TABLE_BITS];
+            tableCounts = new long[1 << TABLE_BITS];
+        }
+        return perftHashed(depth, 0);
+    }
+
+    private long perftHashed(int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (depth == 1) {
+            return generate(ply).size();
+        }
+        // the depth is part of the entry key, the same position at another depth has another count
+        long entryKey = board.getZobristKey() ^ (depth * 0x9E3779B97F4A7C15L);
+        int slot = (int) (entryKey >>> (64 - TABLE_BITS));
+        if (tableKeys[slot] == entryKey && tableCounts[slot] != 0) {
+            return tableCounts[slot];
+        }
+        MoveList moves = generate(ply);
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.playMove(move);
+            nodes += perftHashed(depth - 1, ply + 1);
+            board.takeBackMove(move);
+        }
+        tableKeys[slot] = entryKey;
+        tableCounts[slot] = nodes;
+        return nodes;
+    }
+
+    // splits the tree at the root, every root move is counted on its own board in the pool
+    public long perftParallel(int depth, ForkJoinPool pool) {
+        if (depth <= 1) {
+            return perft(depth);
+        }
+        Position root = Position.of(board);
+        MoveList moves = generate(0);
+        List<RecursiveTask<Long>> tasks = new ArrayList<>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            Position child = root.play(moves.get(i));
+            tasks.add(new RecursiveTask<>() {
+                @Override
+                protected Long compute() {
+                    Board childBoard = new Board();
+                    childBoard.loadPosition(child);
+                    return new Perft(childBoard).perft(depth - 1);
+                }
+            });
+        }
+        return pool.invoke(new RecursiveTask<Long>() {
+            @Override
+            protected Long compute() {
+                long nodes = 0;
+                for (RecursiveTask<Long> task : invokeAll(tasks)) {
+                    nodes += task.join();
+                }
+                return nodes;
+            }
+        });
+    }
+
+    private MoveList generate(int ply) {
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        MoveGenerator.generateLegalMoves(board, board.getSideToMove(), board.getEnPassantSquare(), true, moves);
+        return moves;
+    }
+
+    // usage: Perft [depth] [fen], prints the divide, the total and the speed of each variant
+    public static void main(String[] args) {
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+        String fen = (args.length > 1) ? args[1] : KIWIPETE;
+        Board board = new Board();
+        Notation.loadFEN(board, fen);
+        Perft perft = new Perft(board);
+
+        for (Map.Entry<String, Long> entry : perft.divide(depth).entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+        }
+        long start = System.nanoTime();
+        long nodes = perft.perft(depth);
+        report("perft", nodes, start);
+        start = System.nanoTime();
+        report("hashed", perft.perftHashed(depth), start);
+        start = System.nanoTime();
+        report("parallel", perft.perftParallel(depth, ForkJoinPool.commonPool()), start);
+    }
+
+    private static void report(String name, long nodes, long startNanos) {
+        long millis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        System.out.printf("%s: %d nodes in %d ms (%d nps)%n", name, nodes, millis, nodes * 1000 / millis);
+    }
+}
@@ -1,24 +1,21 @@
 package chess.core;
 
+// pieces hold no per-game state, so each color/type pair is a single shared instance (see Pieces)
 public abstract class Piece {
     private final PieceColor color;
     private final PieceType type;
-    private boolean hasMoved = false;
+    // cached Bitboards.pieceIndex
+    private final int index;
 
     public Piece(PieceColor color, PieceType type) {
         this.color = color;
         this.type = type;
+        this.index = Bitboards.pieceIndex(color, type);
     }
 
     public PieceColor getColor() { return color; }
     public PieceType getType() { return type; }
-    public boolean hasMoved() {
-        return hasMoved;
-    }
-
-    public void setHasMoved(boolean moved) {
-        this.hasMoved = moved;
-    }
+    public int getIndex() { return index; }
 
     public boolean isWhite() { return color == PieceColor.WHITE; }
     public abstract boolean isValidPattern(Move move);
@@ -1,5 +1,9 @@
 package chess.core;
 
 public enum PieceColor {
-    WHITE, BLACK
+    WHITE, BLACK;
+
+    public PieceColor opposite() {
+        return (this == WHITE) ? BLACK : WHITE;
+    }
 }
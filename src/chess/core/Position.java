@@ -0,0 +1,204 @@
+package chess.core;
+
+import chess.core.pieces.Pieces;
+
+import java.util.Arrays;
+
+// an immutable snapshot of a position: twelve piece bitboards plus the position state packed into one int
+// play returns a new snapshot instead of changing this one, so any number of threads can read
+// the same Position without locking while the game's Board keeps moving
+public final class Position {
+    // indexed by Bitboards.pieceIndex, never written after the constructor
+    private final long[] pieceBitboards;
+    private final long whiteOccupancy;
+    private final long blackOccupancy;
+    // castling rights (bits 0-3), en passant square + 1 (bits 4-10), halfmove clock (bits 11-26), black to move (bit 27)
+    private final int state;
+    private final long zobristKey;
+
+    private Position(long[] pieceBitboards, int state, long zobristKey) {
+        this.pieceBitboards = pieceBitboards;
+        long white = 0L;
+        long black = 0L;
+        for (int i = 0; i < 6; i++) {
+            white |= pieceBitboards[i];
+            black |= pieceBitboards[i + 6];
+        }
+        this.whiteOccupancy = white;
+        this.blackOccupancy = black;
+        this.state = state;
+        this.zobristKey = zobristKey;
+    }
+
+    // copies the current placement and state of a board
+    public static Position of(Board board) {
+        long[] bitboards = new long[12];
+        for (PieceColor color : PieceColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                bitboards[Bitboards.pieceIndex(color, type)] = board.getBitboard(color, type);
+            }
+        }
+        int state = packState(board.getSideToMove(), board.getCastlingRights(),
+                board.getEnPassantSquare(), board.getHalfmoveClock());
+        return new Position(bitboards, state, board.getZobristKey());
+    }
+
+    private static int packState(PieceColor sideToMove, int castlingRights, int enPassantSquare, int halfmoveClock) {
+        return castlingRights
+                | ((enPassantSquare + 1) << 4)
+                | ((halfmoveClock & 0xFFFF) << 11)
+                | ((sideToMove == PieceColor.BLACK) ? 1 << 27 : 0);
+    }
+
+    // the position after a packed move of the side to move, the move is assumed to be legal
+    // the Zobrist key is updated with only what changed, the same way Board does it
+    public Position play(int move) {
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        PieceColor color = getSideToMove();
+        Piece movingPiece = getPiece(from);
+        long[] bitboards = pieceBitboards.clone();
+        long key = zobristKey ^ getEnPassantKey();
+
+        // remove a captured piece, en passant captures the pawn beside the destination
+        int capturedSquare = (PackedMove.getMoveType(move) == MoveType.EN_PASSANT)
+                ? Bitboards.square(Bitboards.xOf(from), Bitboards.yOf(to)) : to;
+        Piece capturedPiece = getPiece(capturedSquare);
+        if (capturedPiece != null) {
+            bitboards[capturedPiece.getIndex()] &= ~Bitboards.bit(capturedSquare);
+            key ^= Zobrist.piece(capturedPiece.getIndex(), capturedSquare);
+        }
+
+        // move the piece, a promotion puts the new piece on the destination instead
+        Piece placedPiece = PackedMove.isPromotion(move)
+                ? Pieces.get(color, PackedMove.getPromotionType(move)) : movingPiece;
+        bitboards[movingPiece.getIndex()] &= ~Bitboards.bit(from);
+        bitboards[placedPiece.getIndex()] |= Bitboards.bit(to);
+        key ^= Zobrist.piece(movingPiece.getIndex(), from) ^ Zobrist.piece(placedPiece.getIndex(), to);
+
+        if (PackedMove.getMoveType(move) == MoveType.CASTLING) {
+            // the rook jumps to the square the king passed over
+            int rookFrom = (to > from) ? from + 3 : from - 4;
+            int rookTo = (from + to) / 2;
+            int rook = Bitboards.pieceIndex(color, PieceType.ROOK);
+            bitboards[rook] ^= Bitboards.bit(rookFrom) | Bitboards.bit(rookTo);
+            key ^= Zobrist.piece(rook, rookFrom) ^ Zobrist.piece(rook, rookTo);
+        }
+
+        boolean isPawnMove = movingPiece.getType() == PieceType.PAWN;
+        int castlingRights = getCastlingRights();
+        int newCastlingRights = castlingRights & Board.CASTLING_RIGHTS_MASKS[from] & Board.CASTLING_RIGHTS_MASKS[to];
+        int newEnPassantSquare = (isPawnMove && Math.abs(from - to) == 16) ? (from + to) / 2 : -1;
+        int newHalfmoveClock = (isPawnMove || capturedPiece != null) ? 0 : getHalfmoveClock() + 1;
+        PieceColor opponentColor = color.opposite();
+        key ^= Zobrist.blackToMove() ^ Zobrist.castling(castlingRights) ^ Zobrist.castling(newCastlingRights);
+        key ^= enPassantKey(bitboards, opponentColor, newEnPassantSquare);
+        return new Position(bitboards, packState(opponentColor, newCastlingRights, newEnPassantSquare, newHalfmoveClock), key);
+    }
+
+    // same rule as Board: the en passant file only counts when the side to move can capture there
+    private static long enPassantKey(long[] bitboards, PieceColor sideToMove, int enPassantSquare) {
+        if (enPassantSquare != -1
+                && (Attacks.pawn(sideToMove.opposite(), enPassantSquare)
+                    & bitboards[Bitboards.pieceIndex(sideToMove, PieceType.PAWN)]) != 0L) {
+            return Zobrist.enPassantFile(Bitboards.yOf(enPassantSquare));
+        }
+        return 0L;
+    }
+
+    private long getEnPassantKey() {
+        return enPassantKey(pieceBitboards, getSideToMove(), getEnPassantSquare());
+    }
+
+    public Piece getPiece(int square) {
+        long bit = Bitboards.bit(square);
+        if (((whiteOccupancy | blackOccupancy) & bit) == 0L) {
+            return null;
+        }
+        int offset = ((whiteOccupancy & bit) != 0L) ? 0 : 6;
+        for (int i = offset; i < offset + 6; i++) {
+            if ((pieceBitboards[i] & bit) != 0L) {
+                return Pieces.get(i);
+            }
+        }
+        return null;
+    }
+
+    public long getBitboard(PieceColor color, PieceType type) {
+        return pieceBitboards[Bitboards.pieceIndex(color, type)];
+    }
+
+    public long getOccupancy(PieceColor color) {
+        return (color == PieceColor.WHITE) ? whiteOccupancy : blackOccupancy;
+    }
+
+    public long getOccupancy() {
+        return whiteOccupancy | blackOccupancy;
+    }
+
+    // -1 if there is no king of that color
+    public int getKingSquare(PieceColor color) {
+        long kings = getBitboard(color, PieceType.KING);
+        return (kings != 0L) ? Bitboards.first(kings) : -1;
+    }
+
+    public PieceColor getSideToMove() {
+        return ((state >>> 27) & 1) != 0 ? PieceColor.BLACK : PieceColor.WHITE;
+    }
+
+    public int getCastlingRights() {
+        return state & 0xF;
+    }
+
+    public int getEnPassantSquare() {
+        return ((state >>> 4) & 0x7F) - 1;
+    }
+
+    public int getHalfmoveClock() {
+        return (state >>> 11) & 0xFFFF;
+    }
+
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    public boolean isCheck(PieceColor color) {
+        int kingSquare = getKingSquare(color);
+        if (kingSquare == -1) {
+            return false;
+        }
+        return isSquareAttacked(kingSquare, color.opposite());
+    }
+
+    public boolean isSquareAttacked(int square, PieceColor byColor) {
+        return getAttackers(square, byColor, getOccupancy()) != 0L;
+    }
+
+    // all pieces of the given color attacking a square, sliders see through the given occupancy
+    public long getAttackers(int square, PieceColor byColor, long occupancy) {
+        long queens = getBitboard(byColor, PieceType.QUEEN);
+        return (Attacks.pawn(byColor.opposite(), square) & getBitboard(byColor, PieceType.PAWN))
+                | (Attacks.knight(square) & getBitboard(byColor, PieceType.KNIGHT))
+                | (Attacks.king(square) & getBitboard(byColor, PieceType.KING))
+                | (Attacks.bishop(square, occupancy) & (getBitboard(byColor, PieceType.BISHOP) | queens))
+                | (Attacks.rook(square, occupancy) & (getBitboard(byColor, PieceType.ROOK) | queens));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Position other)) {
+            return false;
+        }
+        return zobristKey == other.zobristKey
+                && state == other.state
+                && Arrays.equals(pieceBitboards, other.pieceBitboards);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(zobristKey);
+    }
+}
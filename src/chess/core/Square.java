@@ -4,16 +4,22 @@ public class Square {
     // x is the rank, y is the file
     private final int y;
     private final int x;
+    // board this square is a view of, the board's bitboards own the piece placement
+    private final Board board;
     Piece piece;
 
     public Square(int x, int y) {
-        this.x = x;
-        this.y = y;
+        this(null, x, y);
     }
     public Square(int x, int y, Piece piece) {
+        this(null, x, y);
+        this.piece = piece;
+    }
+
+    Square(Board board, int x, int y) {
+        this.board = board;
         this.x = x;
         this.y = y;
-        this.piece = piece;
     }
 
     public int getX() {
@@ -22,14 +28,26 @@ public class Square {
     public int getY() {
         return y;
     }
-    public Piece getPiece() { return piece; }
+    public int getIndex() {
+        return Bitboards.square(x, y);
+    }
+    public Piece getPiece() {
+        if (board != null) {
+            return board.getPiece(getIndex());
+        }
+        return piece;
+    }
     public void setPiece(Piece piece) {
+        if (board != null) {
+            board.setPiece(getIndex(), piece);
+            return;
+        }
         this.piece = piece;
     }
 
 
     public boolean isEmpty() {
-        return (piece == null);
+        return (getPiece() == null);
     }
     public boolean isOccupied() { return !(isEmpty()); }
 
@@ -40,4 +58,4 @@ public class Square {
     public int yDistanceTo(Square other) {
         return Math.abs(y - other.getY());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package chess.core;
+
+// random keys for Zobrist hashing, a position's key is the xor of the keys of everything in it
+// fixed seed so keys (and anything stored by key) are the same on every run
+public final class Zobrist {
+    // indexed by [Bitboards.pieceIndex][square]
+    private static final long[][] PIECE_KEYS = new long[12][64];
+    // indexed by the castling rights bitmask
+    private static final long[] CASTLING_KEYS = new long[16];
+    private static final long[] EN_PASSANT_FILE_KEYS = new long[8];
+    private static final long BLACK_TO_MOVE_KEY;
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int piece = 0; piece < 12; piece++) {
+            for (int square = 0; square < 64; square++) {
+                seed = next(seed);
+                PIECE_KEYS[piece][square] = mix(seed);
+            }
+        }
+        for (int rights = 0; rights < 16; rights++) {
+            seed = next(seed);
+            CASTLING_KEYS[rights] = (rights == 0) ? 0L : mix(seed);
+        }
+        for (int file = 0; file < 8; file++) {
+            seed = next(seed);
+            EN_PASSANT_FILE_KEYS[file] = mix(seed);
+        }
+        seed = next(seed);
+        BLACK_TO_MOVE_KEY = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int pieceIndex, int square) {
+        return PIECE_KEYS[pieceIndex][square];
+    }
+
+    public static long castling(int castlingRights) {
+        return CASTLING_KEYS[castlingRights];
+    }
+
+    public static long enPassantFile(int file) {
+        return EN_PASSANT_FILE_KEYS[file];
+    }
+
+    public static long blackToMove() {
+        return BLACK_TO_MOVE_KEY;
+    }
+
+    // splitmix64
+    private static long next(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -2,7 +2,7 @@ package chess.core.pieces;
 import chess.core.*;
 
 public class Bishop extends Piece {
-    public Bishop(PieceColor color) {
+    Bishop(PieceColor color) {
         super(color, PieceType.BISHOP);
     }
 
@@ -2,7 +2,7 @@ package chess.core.pieces;
 import chess.core.*;
 
 public class King extends Piece {
-    public King(PieceColor color) { super(color, PieceType.KING); }
+    King(PieceColor color) { super(color, PieceType.KING); }
 
     @Override
     public boolean isValidPattern(Move move) {
@@ -2,7 +2,7 @@ package chess.core.pieces;
 import chess.core.*;
 
 public class Knight extends Piece {
-    public Knight(PieceColor color) { super(color, PieceType.KNIGHT); }
+    Knight(PieceColor color) { super(color, PieceType.KNIGHT); }
 
     @Override
     public boolean isValidPattern(Move move) {
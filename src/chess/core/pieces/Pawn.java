@@ -2,7 +2,7 @@ package chess.core.pieces;
 import chess.core.*;
 
 public class Pawn extends Piece {
-    public Pawn(PieceColor color) { super(color, PieceType.PAWN); }
+    Pawn(PieceColor color) { super(color, PieceType.PAWN); }
 
     @Override
     public boolean isValidPattern(Move move) {
@@ -0,0 +1,30 @@
+package chess.core.pieces;
+import chess.core.*;
+
+// the 12 shared piece instances, pieces are immutable so boards and moves can all point to the same ones
+public final class Pieces {
+    private static final Piece[] PIECES = new Piece[12];
+
+    static {
+        for (PieceColor color : PieceColor.values()) {
+            PIECES[Bitboards.pieceIndex(color, PieceType.PAWN)] = new Pawn(color);
+            PIECES[Bitboards.pieceIndex(color, PieceType.KNIGHT)] = new Knight(color);
+            PIECES[Bitboards.pieceIndex(color, PieceType.BISHOP)] = new Bishop(color);
+            PIECES[Bitboards.pieceIndex(color, PieceType.ROOK)] = new Rook(color);
+            PIECES[Bitboards.pieceIndex(color, PieceType.QUEEN)] = new Queen(color);
+            PIECES[Bitboards.pieceIndex(color, PieceType.KING)] = new King(color);
+        }
+    }
+
+    private Pieces() {
+    }
+
+    public static Piece get(PieceColor color, PieceType type) {
+        return PIECES[Bitboards.pieceIndex(color, type)];
+    }
+
+    // by Bitboards.pieceIndex
+    public static Piece get(int index) {
+        return PIECES[index];
+    }
+}
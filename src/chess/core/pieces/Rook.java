@@ -2,7 +2,7 @@ package chess.core.pieces;
 import chess.core.*;
 
 public class Rook extends Piece {
-    public Rook(PieceColor color) { super(color, PieceType.ROOK); }
+    Rook(PieceColor color) { super(color, PieceType.ROOK); }
 
     @Override
     public boolean isValidPattern(Move move) {
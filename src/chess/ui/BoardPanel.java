@@ -2,6 +2,7 @@ package chess.ui;
 
 
 import chess.core.*;
+import chess.core.pieces.Pieces;
 import chess.util.ThemeLoader;
 
 import javax.swing.*;
@@ -211,10 +212,15 @@ public class BoardPanel extends JPanel implements MouseListener {
     }
 
     public void generateValidToSquares(Square fromSquare) {
-        ArrayList<Move> validMoves = board.generateAllValidMoves(game.getCurrentTurn(), game.getHistory());
-        for (Move move : validMoves) {
-            if (move.getFromSquare().equals(fromSquare)) {
-                validToSquares.add(move.getToSquare());
+        // read from the game's snapshot, the computer's thread may be playing on the game's board meanwhile;
+        // the list is generated once per ply however often the player clicks
+        MoveList validMoves = game.getLegalMoves();
+        for (int i = 0; i < validMoves.size(); i++) {
+            int move = validMoves.get(i);
+            Square toSquare = board.getSquare(PackedMove.getTo(move));
+            // promotions appear once per piece type
+            if (PackedMove.getFrom(move) == fromSquare.getIndex() && !validToSquares.contains(toSquare)) {
+                validToSquares.add(toSquare);
             }
         }
     }
@@ -243,12 +249,17 @@ public class BoardPanel extends JPanel implements MouseListener {
         g2D.drawImage(theme.getBoardImage(), 0, 0, null);
     }
 
-    public void drawPieces(Graphics2D g2D) {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Square square = board.getSquare(i, j);
-                if (square != null && square.isOccupied()) {
-                    g2D.drawImage(theme.getImageOfPiece(square.getPiece()), j * squareSize, i * squareSize, null);
+    public void drawPieces(Graphics2D g2D, Position position) {
+        // only visit occupied squares
+        for (PieceColor color : PieceColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                BufferedImage image = theme.getImageOfPiece(Pieces.get(color, type));
+                long pieces = position.getBitboard(color, type);
+                while (pieces != 0L) {
+                    int square = Bitboards.first(pieces);
+                    pieces &= pieces - 1;
+                    g2D.drawImage(image,
+                            Bitboards.yOf(square) * squareSize, Bitboards.xOf(square) * squareSize, null);
                 }
             }
         }
@@ -258,16 +269,19 @@ public class BoardPanel extends JPanel implements MouseListener {
     @Override
     public void paintComponent(Graphics g) {
         Graphics2D g2D = (Graphics2D)g;
+        // paint from the game's snapshot, the computer's thread may be changing the board meanwhile
+        Position position = game.getPosition();
+        PieceColor sideToMove = position.getSideToMove();
         // draw board image
         drawBoard(g2D);
         drawCoordinates(g2D);
         // draw square highlights
-        if (board.isCheck(game.getCurrentTurn())) {
-            highlightedSquares.put(board.findKingSquare(game.getCurrentTurn()), new Color(255, 100, 100, 64));
+        if (position.isCheck(sideToMove)) {
+            highlightedSquares.put(board.getSquare(position.getKingSquare(sideToMove)), new Color(255, 100, 100, 64));
         }
         drawSquareHighlights(g2D);
         // draw piece images
-        drawPieces(g2D);
+        drawPieces(g2D, position);
         drawMoveHints(g2D);
     }
 
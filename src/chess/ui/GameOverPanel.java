@@ -118,6 +118,12 @@ public class GameOverPanel extends JPanel {
             case "50" -> {
                 gameOverLabel.setText("Draw by fifty-move rule");
             }
+            case "repetition" -> {
+                gameOverLabel.setText("Draw by threefold repetition");
+            }
+            case "material" -> {
+                gameOverLabel.setText("Draw by insufficient material");
+            }
             case "resign" -> {
                 if (Objects.equals(game.getWinner(), "white")) {
                     gameOverLabel.setText("Black resigned. White wins.");
@@ -0,0 +1,326 @@
+package chess.util;
+
+import chess.core.*;
+import chess.core.pieces.Pieces;
+
+// strict FEN reader that writes straight into a Board
+// the text is read character by character without splitting or substrings, and the whole line is validated
+// in a first pass so a malformed line never leaves the board half set up; the second pass places the pieces
+// EPD lines are accepted too: when the fifth field is not a number the rest of the line is ignored
+public final class FenParser {
+
+    private FenParser() {
+    }
+
+    // pieces of a kind beyond the number a side starts with
+    private static int extraPieces(long[] bitboards, PieceColor color, PieceType type, int startingCount) {
+        return Math.max(0, Bitboards.count(bitboards[Bitboards.pieceIndex(color, type)]) - startingCount);
+    }
+
+    // sets up the board and returns the fullmove number, which the board does not track
+    // throws IllegalArgumentException describing the first problem found
+    public static int parse(CharSequence fen, Board board) {
+        int length = fen.length();
+        int i = skipSpaces(fen, 0);
+
+        // piece placement, validated and collected into bitboards indexed by Bitboards.pieceIndex
+        int placementStart = i;
+        long[] bitboards = new long[12];
+        int whiteKings = 0;
+        int blackKings = 0;
+        // pieces on the king and rook starting squares, for checking the castling rights
+        char a8 = 0;
+        char e8 = 0;
+        char h8 = 0;
+        char a1 = 0;
+        char e1 = 0;
+        char h1 = 0;
+        int x = 0;
+        int y = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (y != 8) {
+                    throw error("rank " + (8 - x) + " does not have 8 squares", fen);
+                }
+                x++;
+                y = 0;
+                if (x > 7) {
+                    throw error("more than 8 ranks", fen);
+                }
+            } else if (c >= '1' && c <= '8') {
+                y += c - '0';
+                if (y > 8) {
+                    throw error("rank " + (8 - x) + " has more than 8 squares", fen);
+                }
+            } else {
+                PieceType type = pieceType(c);
+                if (type == null) {
+                    throw error("unexpected character '" + c + "' in the piece placement", fen);
+                }
+                if (y > 7) {
+                    throw error("rank " + (8 - x) + " has more than 8 squares", fen);
+                }
+                if (type == PieceType.PAWN && (x == 0 || x == 7)) {
+                    throw error("pawn on the first or last rank", fen);
+                }
+                PieceColor color = Character.isUpperCase(c) ? PieceColor.WHITE : PieceColor.BLACK;
+                bitboards[Bitboards.pieceIndex(color, type)] |= Bitboards.bit(Bitboards.square(x, y));
+                if (c == 'K') {
+                    whiteKings++;
+                } else if (c == 'k') {
+                    blackKings++;
+                }
+                if (x == 0 && y == 0) {
+                    a8 = c;
+                } else if (x == 0 && y == 4) {
+                    e8 = c;
+                } else if (x == 0 && y == 7) {
+                    h8 = c;
+                } else if (x == 7 && y == 0) {
+                    a1 = c;
+                } else if (x == 7 && y == 4) {
+                    e1 = c;
+                } else if (x == 7 && y == 7) {
+                    h1 = c;
+                }
+                y++;
+            }
+        }
+        if (x != 7 || y != 8) {
+            throw error("the piece placement does not describe 8 ranks of 8 squares", fen);
+        }
+        if (whiteKings != 1 || blackKings != 1) {
+            throw error("each side needs exactly one king", fen);
+        }
+        // every piece beyond the starting set stands for a promoted pawn, which also keeps a side
+        // to 8 pawns and 16 pieces and the board's material signature within its four bits per kind
+        for (PieceColor color : PieceColor.values()) {
+            int pawns = Bitboards.count(bitboards[Bitboards.pieceIndex(color, PieceType.PAWN)]);
+            int promoted = extraPieces(bitboards, color, PieceType.KNIGHT, 2) + extraPieces(bitboards, color, PieceType.BISHOP, 2)
+                    + extraPieces(bitboards, color, PieceType.ROOK, 2) + extraPieces(bitboards, color, PieceType.QUEEN, 1);
+            String side = (color == PieceColor.WHITE) ? "white" : "black";
+            if (pawns > 8) {
+                throw error(side + " has more than 8 pawns", fen);
+            }
+            if (pawns + promoted > 8) {
+                throw error(side + " has more promoted pieces than missing pawns", fen);
+            }
+        }
+
+        // side to move
+        i = expectSpace(fen, i);
+        PieceColor sideToMove;
+        char side = charAt(fen, i);
+        if (side == 'w') {
+            sideToMove = PieceColor.WHITE;
+        } else if (side == 'b') {
+            sideToMove = PieceColor.BLACK;
+        } else {
+            throw error("side to move has to be 'w' or 'b'", fen);
+        }
+        i = endOfField(fen, i + 1);
+
+        // castling rights, in KQkq order without repeats
+        i = expectSpace(fen, i);
+        int castlingRights = 0;
+        if (charAt(fen, i) == '-') {
+            i = endOfField(fen, i + 1);
+        } else {
+            int lastRight = 0;
+            for (; i < length && fen.charAt(i) != ' '; i++) {
+                int right = switch (fen.charAt(i)) {
+                    case 'K' -> Board.WHITE_KINGSIDE;
+                    case 'Q' -> Board.WHITE_QUEENSIDE;
+                    case 'k' -> Board.BLACK_KINGSIDE;
+                    case 'q' -> Board.BLACK_QUEENSIDE;
+                    default -> throw error("unexpected character '" + fen.charAt(i) + "' in the castling rights", fen);
+                };
+                if (right <= lastRight) {
+                    throw error("castling rights have to be in KQkq order without repeats", fen);
+                }
+                castlingRights |= right;
+                lastRight = right;
+            }
+            if (lastRight == 0) {
+                throw error("missing castling rights", fen);
+            }
+        }
+        // every right needs the king and the rook on their starting squares
+        if (((castlingRights & Board.WHITE_KINGSIDE) != 0 && (e1 != 'K' || h1 != 'R'))
+                || ((castlingRights & Board.WHITE_QUEENSIDE) != 0 && (e1 != 'K' || a1 != 'R'))
+                || ((castlingRights & Board.BLACK_KINGSIDE) != 0 && (e8 != 'k' || h8 != 'r'))
+                || ((castlingRights & Board.BLACK_QUEENSIDE) != 0 && (e8 != 'k' || a8 != 'r'))) {
+            throw error("castling right without the king and rook on their starting squares", fen);
+        }
+
+        // en passant target square, behind a pawn of the side that just moved
+        i = expectSpace(fen, i);
+        int enPassantSquare = -1;
+        if (charAt(fen, i) == '-') {
+            i = endOfField(fen, i + 1);
+        } else {
+            char file = charAt(fen, i);
+            char rank = charAt(fen, i + 1);
+            int expectedRank = (sideToMove == PieceColor.WHITE) ? '6' : '3';
+            if (file < 'a' || file > 'h' || rank != expectedRank) {
+                throw error("invalid en passant square", fen);
+            }
+            int epX = 7 - (rank - '1');
+            int epY = file - 'a';
+            int pawnX = (sideToMove == PieceColor.WHITE) ? epX + 1 : epX - 1;
+            char pushedPawn = (sideToMove == PieceColor.WHITE) ? 'p' : 'P';
+            if (pieceAt(fen, placementStart, pawnX, epY) != pushedPawn
+                    || pieceAt(fen, placementStart, epX, epY) != 0) {
+                throw error("no pawn can have just passed over the en passant square", fen);
+            }
+            enPassantSquare = Bitboards.square(epX, epY);
+            i = endOfField(fen, i + 2);
+        }
+
+        // halfmove clock and fullmove number, both missing or an EPD operation means the defaults
+        int halfmoveClock = 0;
+        int fullmoveNumber = 1;
+        int next = skipSpaces(fen, i);
+        if (next < length && isDigit(fen.charAt(next))) {
+            i = expectSpace(fen, i);
+            int end = endOfNumber(fen, i);
+            halfmoveClock = parseNumber(fen, i, end);
+            if (halfmoveClock > 0xFFFF) {
+                throw error("halfmove clock out of range", fen);
+            }
+            i = expectSpace(fen, end);
+            end = endOfNumber(fen, i);
+            fullmoveNumber = parseNumber(fen, i, end);
+            if (fullmoveNumber < 1) {
+                throw error("the fullmove number starts at 1", fen);
+            }
+            if (skipSpaces(fen, end) != length) {
+                throw error("unexpected text after the fullmove number", fen);
+            }
+        }
+
+        // the side that just moved cannot have left its king in check
+        if (isKingAttacked(bitboards, sideToMove.opposite())) {
+            throw error("the side not to move is in check", fen);
+        }
+
+        // the line is valid, set up the board
+        board.emptyBoard();
+        for (int index = 0; index < bitboards.length; index++) {
+            long pieces = bitboards[index];
+            while (pieces != 0L) {
+                int square = Bitboards.first(pieces);
+                pieces &= pieces - 1;
+                board.getSquare(square).setPiece(Pieces.get(index));
+            }
+        }
+        board.setPositionState(sideToMove, castlingRights, enPassantSquare, halfmoveClock);
+        return fullmoveNumber;
+    }
+
+    // whether the king of the color is attacked in a placement given as bitboards
+    private static boolean isKingAttacked(long[] bitboards, PieceColor color) {
+        int kingSquare = Bitboards.first(bitboards[Bitboards.pieceIndex(color, PieceType.KING)]);
+        PieceColor opponentColor = color.opposite();
+        long occupancy = 0L;
+        for (long pieces : bitboards) {
+            occupancy |= pieces;
+        }
+        long queens = bitboards[Bitboards.pieceIndex(opponentColor, PieceType.QUEEN)];
+        return ((Attacks.pawn(color, kingSquare) & bitboards[Bitboards.pieceIndex(opponentColor, PieceType.PAWN)])
+                | (Attacks.knight(kingSquare) & bitboards[Bitboards.pieceIndex(opponentColor, PieceType.KNIGHT)])
+                | (Attacks.king(kingSquare) & bitboards[Bitboards.pieceIndex(opponentColor, PieceType.KING)])
+                | (Attacks.bishop(kingSquare, occupancy) & (bitboards[Bitboards.pieceIndex(opponentColor, PieceType.BISHOP)] | queens))
+                | (Attacks.rook(kingSquare, occupancy) & (bitboards[Bitboards.pieceIndex(opponentColor, PieceType.ROOK)] | queens))) != 0L;
+    }
+
+    private static PieceType pieceType(char c) {
+        return switch (Character.toLowerCase(c)) {
+            case 'p' -> PieceType.PAWN;
+            case 'n' -> PieceType.KNIGHT;
+            case 'b' -> PieceType.BISHOP;
+            case 'r' -> PieceType.ROOK;
+            case 'q' -> PieceType.QUEEN;
+            case 'k' -> PieceType.KING;
+            default -> null;
+        };
+    }
+
+    // the piece letter on a square of an already validated placement field, 0 for an empty square
+    private static char pieceAt(CharSequence fen, int placementStart, int x, int y) {
+        int i = placementStart;
+        for (int rank = 0; rank < x; i++) {
+            if (fen.charAt(i) == '/') {
+                rank++;
+            }
+        }
+        int file = 0;
+        while (true) {
+            char c = fen.charAt(i++);
+            if (c >= '1' && c <= '8') {
+                file += c - '0';
+                if (file > y) {
+                    return 0;
+                }
+            } else {
+                if (file == y) {
+                    return c;
+                }
+                file++;
+            }
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static char charAt(CharSequence fen, int i) {
+        return (i < fen.length()) ? fen.charAt(i) : 0;
+    }
+
+    private static int skipSpaces(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    // fields are separated by exactly one space
+    private static int expectSpace(CharSequence fen, int i) {
+        if (charAt(fen, i) != ' ' || i + 1 >= fen.length() || fen.charAt(i + 1) == ' ') {
+            throw error("missing field", fen);
+        }
+        return i + 1;
+    }
+
+    private static int endOfField(CharSequence fen, int i) {
+        if (i < fen.length() && fen.charAt(i) != ' ') {
+            throw error("unexpected character '" + fen.charAt(i) + "'", fen);
+        }
+        return i;
+    }
+
+    private static int endOfNumber(CharSequence fen, int i) {
+        while (i < fen.length() && isDigit(fen.charAt(i))) {
+            i++;
+        }
+        return endOfField(fen, i);
+    }
+
+    private static int parseNumber(CharSequence fen, int start, int end) {
+        if (start == end || end - start > 6) {
+            throw error("invalid move counter", fen);
+        }
+        int res = 0;
+        for (int i = start; i < end; i++) {
+            res = res * 10 + (fen.charAt(i) - '0');
+        }
+        return res;
+    }
+
+    private static IllegalArgumentException error(String message, CharSequence fen) {
+        return new IllegalArgumentException("Invalid FEN (" + message + "): " + fen);
+    }
+}
@@ -5,6 +5,8 @@ import chess.core.pieces.*;
 import chess.core.MoveValidator;
 
 public class Notation {
+    // the position after a checking move is loaded here to look for a reply, one board per thread
+    private static final ThreadLocal<Board> SCRATCH_BOARD = ThreadLocal.withInitial(Board::new);
 
     // from e.g "a3" to Square(5, 0);
     public static Square getSquareFromNotation(Board board, String notation) {
@@ -38,29 +40,11 @@ public class Notation {
     public static Piece getPieceFromLetter(char letter) {
         PieceType type = getPieceTypeFromLetter(Character.toUpperCase(letter));
         PieceColor color = (Character.isUpperCase(letter)) ? PieceColor.WHITE : PieceColor.BLACK;
-        switch (type) {
-            case KING -> {
-                return new King(color);
-            }
-            case QUEEN -> {
-                return new Queen(color);
-            }
-            case ROOK -> {
-                return new Rook(color);
-            }
-            case BISHOP -> {
-                return new Bishop(color);
-            }
-            case KNIGHT -> {
-                return new Knight(color);
-            }
-            case PAWN -> {
-                return new Pawn(color);
-            }
-            default -> {
-                return null;
-            }
+        if (type == null) {
+            return null;
         }
+        // pieces are shared, so no instance is created per square
+        return Pieces.get(color, type);
     }
 
     public static char getUnicodePieceSymbolFromType(PieceType type) {
@@ -88,6 +72,11 @@ public class Notation {
 
 
     public static String moveToAlgebraicNotation(Board board, Move move) {
+        return moveToAlgebraicNotationWithoutSuffix(board, move) + getCheckSuffix(board, move);
+    }
+
+    // the SAN of a move without its check or mate sign, for callers that already know the position after it
+    public static String moveToAlgebraicNotationWithoutSuffix(Board board, Move move) {
         StringBuilder res = new StringBuilder();
         boolean isPawn = move.getMovingPiece().getType() == PieceType.PAWN;
         int fromSquareX = move.getFromSquare().getX();
@@ -112,35 +101,45 @@ public class Notation {
             boolean needFile = false;
             boolean needRank = false;
 
-            for (int i = 0; i < 8; i++) {
-                for (int j = 0; j < 8; j++) {
-                    if (i == fromSquareX && j == fromSquareY) {
+            // other pieces of the same type that attack the destination, looking back from it
+            // with the same piece's attack pattern, minus those a pin keeps off the destination
+            PieceColor color = move.getMovingPiece().getColor();
+            PieceType type = move.getMovingPiece().getType();
+            int from = move.getFromSquare().getIndex();
+            int to = move.getToSquare().getIndex();
+            long occupancy = board.getOccupancy();
+            long attackers = switch (type) {
+                case KNIGHT -> Attacks.knight(to);
+                case BISHOP -> Attacks.bishop(to, occupancy);
+                case ROOK -> Attacks.rook(to, occupancy);
+                case QUEEN -> Attacks.queen(to, occupancy);
+                default -> 0L;
+            };
+            long others = attackers & board.getBitboard(color, type) & ~Bitboards.bit(from);
+            if (others != 0L) {
+                long pinned = board.getPinnedPieces(color);
+                int kingSquare = board.getKingSquare(color);
+                while (others != 0L) {
+                    int otherFrom = Bitboards.first(others);
+                    others &= others - 1;
+                    if (Bitboards.contains(pinned, otherFrom) && !Bitboards.contains(Attacks.line(kingSquare, otherFrom), to)) {
                         continue;
                     }
+                    Square otherSquare = board.getSquare(otherFrom);
+
+                    // specify file if same rank
+                    if (otherSquare.getX() == fromSquareX) {
+                        needFile = true;
+                    }
+
+                    if (otherSquare.getY() == fromSquareY) {
+                        // same file, need rank to disambiguate
+                        needRank = true;
+                    }
 
-                    Square otherSquare = board.getSquare(i, j);
-                    Piece otherPiece = otherSquare.getPiece();
-                    Move otherMove = new Move(otherSquare, move.getToSquare());
-
-                    if (otherPiece != null
-                            && otherPiece.getColor() == move.getMovingPiece().getColor()
-                            && otherPiece.getType() == move.getMovingPiece().getType()
-                            && MoveValidator.isValidNormalMove(board, otherMove)) {
-
-                        // specify file if same rank
-                        if (otherSquare.getX() == fromSquareX) {
-                            needFile = true;
-                        }
-
-                        if (otherSquare.getY() == fromSquareY) {
-                            // same file, need rank to disambiguate
-                            needRank = true;
-                        }
-
-                        if (otherSquare.getX() != fromSquareX && otherSquare.getY() != fromSquareY) {
-                            // different file and rank, prefer file disambiguation by default
-                            needFile = true;
-                        }
+                    if (otherSquare.getX() != fromSquareX && otherSquare.getY() != fromSquareY) {
+                        // different file and rank, prefer file disambiguation by default
+                        needFile = true;
                     }
                 }
             }
@@ -167,99 +166,253 @@ public class Notation {
             res.append('=').append(Character.toUpperCase(promotedToPieceLetter));
         }
 
-        // check
-        PieceColor opponentSide = (move.getMovingPiece().isWhite()) ? PieceColor.BLACK : PieceColor.WHITE;
-        if (board.isCheck(opponentSide)) {
-            if (board.generateAllValidNormalMoves(opponentSide).isEmpty()) {
-                res.append('#');
-            } else {
-                res.append('+');
-            }
-        }
-
         return res.toString();
     }
 
-    public static String moveToUnicodeAlgebraicNotation(Board board, Move move) {
-        String res = moveToAlgebraicNotation(board, move);
-        res = res
-            .replace("K", "♔")
-            .replace("Q", "♕")
-            .replace("R", "♖")
-            .replace("B", "♗")
-            .replace("N", "♘");
-        return res;
+    // "+" or "#" if the move gives check or mate, "" otherwise or if the move is not legal for the side to move
+    // read from a snapshot of the position after the move, the board itself is never changed
+    private static String getCheckSuffix(Board board, Move move) {
+        PieceType promotion = MoveValidator.isValidPromotion(move) ? move.getPromotionPieceType() : null;
+        int packedMove = MoveGenerator.toLegalMove(board, move.getFromSquare().getIndex(), move.getToSquare().getIndex(), promotion);
+        if (packedMove == PackedMove.NONE) {
+            return "";
+        }
+        Position after = Position.of(board).play(packedMove);
+        PieceColor opponentSide = after.getSideToMove();
+        if (!after.isCheck(opponentSide)) {
+            return "";
+        }
+        // telling mate from check needs a reply, looked for on a reused board with the early-exit scan
+        Board scratchBoard = SCRATCH_BOARD.get();
+        scratchBoard.loadPosition(after);
+        return MoveGenerator.hasAnyLegalMove(scratchBoard, opponentSide, after.getEnPassantSquare()) ? "+" : "#";
     }
 
-    public static String gameToFEN(Game game) {
-        String res = "";
-        Board board = game.getBoard();
+    // the legal move of the side to move written in SAN, e.g. "Nbxd7+", "exd8=Q#" or "O-O-O",
+    // null if there is no such move or the SAN is ambiguous
+    public static Move algebraicToMove(Board board, CharSequence san) {
+        int move = algebraicToPackedMove(board, san, 0, san.length());
+        return (move != PackedMove.NONE) ? board.toMove(move) : null;
+    }
 
-        // turn
-        char turn = (game.getCurrentTurn() == PieceColor.WHITE) ? 'w' : 'b';
+    // the same for the characters between start and end, as a packed move or PackedMove.NONE
+    // only the pieces of the named type that attack the destination are tried, each with one legality test,
+    // instead of generating every legal move; check signs and annotation suffixes at the end are ignored
+    public static int algebraicToPackedMove(Board board, CharSequence san, int start, int end) {
+        while (end > start && "+#!?".indexOf(san.charAt(end - 1)) != -1) {
+            end--;
+        }
+        if (end - start < 2) {
+            return PackedMove.NONE;
+        }
+        PieceColor color = board.getSideToMove();
+
+        // castling, also written with zeros
+        char first = san.charAt(start);
+        if (first == 'O' || first == '0') {
+            int kingSquare = board.getKingSquare(color);
+            if (kingSquare == -1 || !isCastlingNotation(san, start, end, first)) {
+                return PackedMove.NONE;
+            }
+            int to = (end - start == 5) ? kingSquare - 2 : kingSquare + 2;
+            return MoveGenerator.toLegalMove(board, kingSquare, to, null);
+        }
 
-        // possible en passant target
-        String possibleEnPassantTarget = "";
-        if (!game.getHistory().isEmpty()) {
-            Move lastMove = game.getHistory().getLastMove();
-            if (MoveValidator.isDoublePawnPush(lastMove)) {
-                int xDirection = (lastMove.getMovingPiece().isWhite()) ? -1 : 1;
-                Square enPassantCaptureSquare = board.getSquare(lastMove.getToSquare().getX() - xDirection, lastMove.getToSquare().getY());
-                possibleEnPassantTarget += squareToNotation(enPassantCaptureSquare);
+        // pieces are uppercase letters and pawns have none, so a lowercase b is always a file
+        PieceType type = switch (first) {
+            case 'N' -> PieceType.KNIGHT;
+            case 'B' -> PieceType.BISHOP;
+            case 'R' -> PieceType.ROOK;
+            case 'Q' -> PieceType.QUEEN;
+            case 'K' -> PieceType.KING;
+            default -> PieceType.PAWN;
+        };
+        if (type != PieceType.PAWN) {
+            start++;
+        }
+
+        // promotion, the '=' is sometimes left out
+        PieceType promotion = null;
+        if (type == PieceType.PAWN && end - start >= 3 && Character.isUpperCase(san.charAt(end - 1))) {
+            promotion = switch (san.charAt(end - 1)) {
+                case 'N' -> PieceType.KNIGHT;
+                case 'B' -> PieceType.BISHOP;
+                case 'R' -> PieceType.ROOK;
+                case 'Q' -> PieceType.QUEEN;
+                default -> null;
+            };
+            if (promotion == null) {
+                return PackedMove.NONE;
             }
+            end -= (san.charAt(end - 2) == '=') ? 2 : 1;
+        }
+
+        // destination
+        if (end - start < 2) {
+            return PackedMove.NONE;
+        }
+        int toY = san.charAt(end - 2) - 'a';
+        int toX = 7 - (san.charAt(end - 1) - '1');
+        if (toY < 0 || toY > 7 || toX < 0 || toX > 7) {
+            return PackedMove.NONE;
         }
-        if (possibleEnPassantTarget.isEmpty()) {
-            possibleEnPassantTarget += '-';
+        int to = Bitboards.square(toX, toY);
+        end -= 2;
+
+        // disambiguation by file and/or rank, and the capture sign
+        long fromMask = ~0L;
+        int fromY = -1;
+        for (int i = start; i < end; i++) {
+            char c = san.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromY = c - 'a';
+                fromMask &= Bitboards.FILE_A << fromY;
+            } else if (c >= '1' && c <= '8') {
+                fromMask &= Bitboards.RANK_8 << (8 * (7 - (c - '1')));
+            } else if (c != 'x' && c != ':') {
+                return PackedMove.NONE;
+            }
         }
 
-        // castling rights
-        String castlingRights = "";
-        if (MoveValidator.canCastleKingside(board, PieceColor.WHITE)) {
-            castlingRights += 'K';
+        // the squares a piece of the type could have come from, seen backwards from the destination
+        long occupancy = board.getOccupancy();
+        long candidates = switch (type) {
+            case PAWN -> (fromY != -1 && fromY != toY)
+                    ? Attacks.pawn(color.opposite(), to) : getPawnPushOrigin(board, color, to);
+            case KNIGHT -> Attacks.knight(to);
+            case BISHOP -> Attacks.bishop(to, occupancy);
+            case ROOK -> Attacks.rook(to, occupancy);
+            case QUEEN -> Attacks.queen(to, occupancy);
+            case KING -> Attacks.king(to);
+        };
+        candidates &= board.getBitboard(color, type) & fromMask;
+
+        int res = PackedMove.NONE;
+        while (candidates != 0L) {
+            int from = Bitboards.first(candidates);
+            candidates &= candidates - 1;
+            int move = MoveGenerator.toLegalMove(board, from, to, promotion);
+            if (move != PackedMove.NONE) {
+                if (res != PackedMove.NONE) {
+                    return PackedMove.NONE;
+                }
+                res = move;
+            }
         }
-        if (MoveValidator.canCastleQueenside(board, PieceColor.WHITE)) {
-            castlingRights += 'Q';
+        return res;
+    }
+
+    // "O-O" or "O-O-O", with the letter given
+    private static boolean isCastlingNotation(CharSequence san, int start, int end, char letter) {
+        int length = end - start;
+        if (length != 3 && length != 5) {
+            return false;
         }
-        if (MoveValidator.canCastleKingside(board, PieceColor.BLACK)) {
-            castlingRights += 'k';
+        for (int i = 0; i < length; i++) {
+            if (san.charAt(start + i) != ((i % 2 == 0) ? letter : '-')) {
+                return false;
+            }
         }
-        if (MoveValidator.canCastleQueenside(board, PieceColor.BLACK)) {
-            castlingRights += 'q';
+        return true;
+    }
+
+    // the square of the pawn that could push to the destination, one step behind it or two from the start rank
+    private static long getPawnPushOrigin(Board board, PieceColor color, int to) {
+        // white pawns move towards lower square indices
+        int behind = to + ((color == PieceColor.WHITE) ? 8 : -8);
+        if (behind < 0 || behind > 63) {
+            return 0L;
         }
-        if (castlingRights.isEmpty()) {
-            castlingRights += "-";
+        if (board.getPiece(behind) != null) {
+            return Bitboards.bit(behind);
         }
+        int twoBehind = behind + ((color == PieceColor.WHITE) ? 8 : -8);
+        return (twoBehind >= 0 && twoBehind <= 63) ? Bitboards.bit(twoBehind) : 0L;
+    }
+
+    public static String moveToUnicodeAlgebraicNotation(Board board, Move move) {
+        return algebraicToUnicode(moveToAlgebraicNotation(board, move));
+    }
+
+    // swaps the piece letters of an algebraic notation string for Unicode symbols
+    public static String algebraicToUnicode(String algebraicNotation) {
+        return algebraicNotation
+            .replace("K", "♔")
+            .replace("Q", "♕")
+            .replace("R", "♖")
+            .replace("B", "♗")
+            .replace("N", "♘");
+    }
+
+    // the game memoises the FEN of its current position, see Game.getFEN
+    public static String gameToFEN(Game game) {
+        return game.getFEN();
+    }
 
-        // piece placement
-        String placement = "";
-        for (int i = 0; i < 8; i++) {
+    // writes the FEN of a position snapshot into the builder, straight from its squares and position state
+    // the position does not count full moves, so the fullmove number is passed in
+    public static void appendFEN(Position position, int fullMoveNumber, StringBuilder res) {
+        // piece placement, rank 8 first
+        for (int x = 0; x < 8; x++) {
             int emptySquares = 0;
-            for (int j = 0; j < 8; j++) {
-                Square square = board.getSquare(i, j);
-                if (square.isEmpty()) {
+            for (int y = 0; y < 8; y++) {
+                Piece piece = position.getPiece(Bitboards.square(x, y));
+                if (piece == null) {
                     emptySquares++;
                 } else {
                     if (emptySquares != 0) {
-                        placement += emptySquares;
+                        res.append((char) ('0' + emptySquares));
                         emptySquares = 0;
                     }
-                    placement += getPieceLetterFromPiece(square.getPiece());
+                    res.append(getPieceLetterFromPiece(piece));
                 }
             }
             if (emptySquares != 0) {
-                placement += emptySquares;
+                res.append((char) ('0' + emptySquares));
+            }
+            if (x != 7) {
+                res.append('/');
+            }
+        }
+
+        // turn
+        res.append(' ').append((position.getSideToMove() == PieceColor.WHITE) ? 'w' : 'b').append(' ');
+
+        // castling rights
+        int castlingRights = position.getCastlingRights();
+        if (castlingRights == 0) {
+            res.append('-');
+        } else {
+            if ((castlingRights & Board.WHITE_KINGSIDE) != 0) {
+                res.append('K');
+            }
+            if ((castlingRights & Board.WHITE_QUEENSIDE) != 0) {
+                res.append('Q');
             }
-            if (i != 7 ) {
-                placement += '/';
+            if ((castlingRights & Board.BLACK_KINGSIDE) != 0) {
+                res.append('k');
+            }
+            if ((castlingRights & Board.BLACK_QUEENSIDE) != 0) {
+                res.append('q');
             }
         }
 
+        // possible en passant target
+        int enPassantSquare = position.getEnPassantSquare();
+        res.append(' ');
+        if (enPassantSquare == -1) {
+            res.append('-');
+        } else {
+            res.append((char) ('a' + Bitboards.yOf(enPassantSquare))).append((char) ('1' + (7 - Bitboards.xOf(enPassantSquare))));
+        }
+
         // halfmove and fullmove count
-        int halfMoves = game.getHalfMoves();
-        int fullMoves = game.getHistory().getSize() / 2 + 1;
-        res += placement + ' ' + turn + ' ' + castlingRights + ' '
-            + possibleEnPassantTarget + ' ' + halfMoves + ' ' + fullMoves;
-        return res;
+        res.append(' ').append(position.getHalfmoveClock()).append(' ').append(fullMoveNumber);
+    }
+
+    // sets up a board from a FEN string, see FenParser
+    public static void loadFEN(Board board, String fen) {
+        FenParser.parse(fen, board);
     }
 
     // used for both game restore and stockfish
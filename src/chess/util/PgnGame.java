@@ -0,0 +1,118 @@
+package chess.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// one game read by PgnReader: its tag pairs, the main line as packed moves, comments, NAGs and variations
+// only the main line is played out and checked; variations are kept as the raw movetext between their
+// brackets, nested variations and comments included, for a caller to replay if it needs them
+public class PgnGame {
+    private final Map<String, String> headers;
+    private final int[] moves;
+    private final String result;
+    // comment and NAG positions are plies: 0 is before the first move, n is after the n-th move
+    private final int[] commentPlies;
+    private final List<String> comments;
+    // variation positions are the plies they start from, so a variation at ply n is an alternative to getMove(n)
+    private final int[] variationPlies;
+    private final List<String> variations;
+    // ply << 8 | NAG number
+    private final int[] nags;
+    private final String error;
+
+    PgnGame(Map<String, String> headers, int[] moves, String result, int[] commentPlies, List<String> comments,
+            int[] variationPlies, List<String> variations, int[] nags, String error) {
+        this.headers = headers;
+        this.moves = moves;
+        this.result = result;
+        this.commentPlies = commentPlies;
+        this.comments = comments;
+        this.variationPlies = variationPlies;
+        this.variations = variations;
+        this.nags = nags;
+        this.error = error;
+    }
+
+    // tag pairs in the order they appeared
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    // the FEN tag of a game that did not start from the initial position, null otherwise
+    public String getStartingFEN() {
+        return headers.get("FEN");
+    }
+
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    // packed move, see PackedMove
+    public int getMove(int ply) {
+        return moves[ply];
+    }
+
+    public int[] getMoves() {
+        return moves.clone();
+    }
+
+    // "1-0", "0-1", "1/2-1/2" or "*", null if the movetext ended without one
+    public String getResult() {
+        return result;
+    }
+
+    // comments attached to a ply, in the order they appeared
+    public List<String> getComments(int ply) {
+        int from = lowerBound(commentPlies, ply);
+        int to = lowerBound(commentPlies, ply + 1);
+        return comments.subList(from, to);
+    }
+
+    // movetext of the variations that start from the position after ply main line moves, e.g. "1... e5 2. Nf3"
+    public List<String> getVariations(int ply) {
+        int from = lowerBound(variationPlies, ply);
+        int to = lowerBound(variationPlies, ply + 1);
+        return variations.subList(from, to);
+    }
+
+    // NAG numbers attached to a ply, move suffixes like "!" and "?!" included as their NAG equivalents
+    public int[] getNags(int ply) {
+        int from = lowerBound(nags, ply << 8);
+        int to = lowerBound(nags, (ply + 1) << 8);
+        int[] res = Arrays.copyOfRange(nags, from, to);
+        for (int i = 0; i < res.length; i++) {
+            res[i] &= 0xFF;
+        }
+        return res;
+    }
+
+    // why the moves stop early, e.g. an illegal or ambiguous move, null if the whole main line was read
+    public String getError() {
+        return error;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    // first index whose value is not below the key, the arrays are sorted by ply
+    private static int lowerBound(int[] values, int key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,164 @@
+package chess.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+// reads a PGN file on all threads of a pool: the file is memory-mapped in chunks that start at an [Event tag,
+// every chunk is read by its own PgnReader with its own Board, and the games are handed to the consumer
+// in file order; only a few chunks per thread are in flight, so memory use does not grow with the file
+// a chunk never grows past MAX_CHUNK_SIZE: without an [Event tag it ends at a blank line followed by a tag,
+// and if there is none of those either the rest of the file is streamed through a single PgnReader
+public class PgnImporter {
+    private static final long CHUNK_SIZE = 4L << 20;
+    private static final long MAX_CHUNK_SIZE = 64L << 20;
+    // how far to look at a time for the start of the next game
+    private static final int SEARCH_WINDOW = 1 << 16;
+    private static final byte[] EVENT_TAG = "[Event".getBytes(StandardCharsets.US_ASCII);
+
+    private final ForkJoinPool pool;
+
+    public PgnImporter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public void importFile(Path file, Consumer<PgnGame> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int maxInFlight = pool.getParallelism() * 2;
+            ArrayDeque<ForkJoinTask<List<PgnGame>>> pending = new ArrayDeque<>();
+            long chunkStart = 0;
+            long tailStart = -1;
+            while (chunkStart < size || !pending.isEmpty()) {
+                while (chunkStart < size && pending.size() < maxInFlight) {
+                    long chunkEnd = findChunkEnd(channel, chunkStart, size);
+                    if (chunkEnd == -1) {
+                        tailStart = chunkStart;
+                        chunkStart = size;
+                        break;
+                    }
+                    pending.add(pool.submit(readChunk(channel, chunkStart, chunkEnd)));
+                    chunkStart = chunkEnd;
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+                // the oldest chunk first, the others keep being read meanwhile
+                for (PgnGame game : pending.poll().join()) {
+                    consumer.accept(game);
+                }
+            }
+            if (tailStart != -1) {
+                // no place to split it safely, read it in order on this thread
+                channel.position(tailStart);
+                new PgnReader(channel).readAll(consumer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static ForkJoinTask<List<PgnGame>> readChunk(FileChannel channel, long start, long end) {
+        return ForkJoinTask.adapt(() -> {
+            try {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                List<PgnGame> games = new ArrayList<>();
+                new PgnReader(buffer).readAll(games::add);
+                return games;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // end of the chunk starting at the given offset: the first "[Event" at the start of a line past CHUNK_SIZE,
+    // else the first blank line followed by a tag, both within MAX_CHUNK_SIZE; the file size if the chunk
+    // reaches it, -1 if there is nowhere to split
+    private static long findChunkEnd(FileChannel channel, long chunkStart, long size) throws IOException {
+        if (size - chunkStart <= CHUNK_SIZE) {
+            return size;
+        }
+        long from = chunkStart + CHUNK_SIZE;
+        long limit = Math.min(chunkStart + MAX_CHUNK_SIZE, size);
+        long blankLine = -1;
+        while (from < limit) {
+            int length = (int) Math.min(SEARCH_WINDOW + EVENT_TAG.length, size - from);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+            for (int i = 0; i < length && from + i < limit; i++) {
+                if (window.get(i) != '\n') {
+                    continue;
+                }
+                if (matchesEventTag(window, i + 1)) {
+                    return from + i + 1;
+                }
+                if (blankLine == -1) {
+                    int tag = tagAfterBlankLine(window, i + 1);
+                    if (tag != -1) {
+                        blankLine = from + tag;
+                    }
+                }
+            }
+            if (length < SEARCH_WINDOW + EVENT_TAG.length) {
+                break;
+            }
+            // the windows overlap by the tag length so a tag across two windows is still found
+            from += SEARCH_WINDOW;
+        }
+        if (blankLine != -1) {
+            return blankLine;
+        }
+        return (limit == size) ? size : -1;
+    }
+
+    // index of the '[' when the line at the offset is empty and the next one starts with a tag, else -1
+    private static int tagAfterBlankLine(MappedByteBuffer buffer, int offset) {
+        if (offset < buffer.limit() && buffer.get(offset) == '\r') {
+            offset++;
+        }
+        if (offset + 1 < buffer.limit() && buffer.get(offset) == '\n' && buffer.get(offset + 1) == '[') {
+            return offset + 1;
+        }
+        return -1;
+    }
+
+    private static boolean matchesEventTag(MappedByteBuffer buffer, int offset) {
+        if (offset + EVENT_TAG.length > buffer.limit()) {
+            return false;
+        }
+        for (int i = 0; i < EVENT_TAG.length; i++) {
+            if (buffer.get(offset + i) != EVENT_TAG[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // usage: PgnImporter file [threads], prints the number of games and moves and the speed
+    public static void main(String[] args) throws IOException {
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long[] counts = new long[3];
+        long start = System.nanoTime();
+        new PgnImporter(pool).importFile(Path.of(args[0]), game -> {
+            counts[0]++;
+            counts[1] += game.getMoveCount();
+            if (game.hasError()) {
+                counts[2]++;
+            }
+        });
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        System.out.printf("%d games, %d moves, %d with errors in %d ms on %d threads (%d games/s)%n",
+                counts[0], counts[1], counts[2], millis, threads, counts[0] * 1000 / millis);
+        pool.shutdown();
+    }
+}
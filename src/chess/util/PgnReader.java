@@ -0,0 +1,416 @@
+package chess.util;
+
+import chess.core.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// reads PGN games one at a time from a channel through a fixed size buffer, so memory use depends on
+// the longest game and not on the size of the file
+// the main line is played on one reusable Board and every SAN move is resolved with Notation.algebraicToPackedMove;
+// variations are kept as their raw movetext but not played, a game with an illegal move keeps the moves
+// before it and reports the problem through PgnGame.getError
+public class PgnReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    // in NAG order, "!" is $1 up to "?!" as $6
+    private static final String[] MOVE_SUFFIXES = {"!", "?", "!!", "??", "!?", "?!"};
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final Board board = new Board();
+
+    // reused for every token, comment and tag value
+    private final StringBuilder token = new StringBuilder();
+    private byte[] text = new byte[256];
+    private int textLength;
+    private final MoveList moves = new MoveList();
+    private final MoveList nags = new MoveList();
+    private boolean atStart = true;
+    // nesting depth of the variation being read, 0 on the main line; every byte read inside
+    // a variation is recorded until it closes
+    private int depth;
+    private byte[] variationText = new byte[256];
+    private int variationLength;
+
+    // the channel has to be blocking, a read that returns nothing is taken as the end of the input
+    public PgnReader(ReadableByteChannel channel) {
+        if (channel instanceof SelectableChannel selectable && !selectable.isBlocking()) {
+            throw new IllegalArgumentException("PgnReader needs a blocking channel");
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+    }
+
+    // reads the games in a buffer that already holds the whole input, from its position to its limit
+    public PgnReader(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = buffer;
+    }
+
+    // the next game, or null at the end of the input
+    public PgnGame readGame() throws IOException {
+        if (atStart) {
+            skipByteOrderMark();
+            atStart = false;
+        }
+        int c = skipWhitespace();
+        if (c == -1) {
+            return null;
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        while (c == '[' || c == '%') {
+            if (c == '%') {
+                skipLine();
+            } else {
+                readTag(headers);
+            }
+            c = skipWhitespace();
+        }
+
+        String error = null;
+        String fen = headers.get("FEN");
+        if (fen != null) {
+            try {
+                FenParser.parse(fen, board);
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+        } else {
+            board.emptyBoard();
+            board.setupPieces();
+            board.setPositionState(PieceColor.WHITE, Board.ALL_CASTLING_RIGHTS, -1, 0);
+        }
+
+        moves.clear();
+        nags.clear();
+        List<Integer> commentPlies = new ArrayList<>();
+        List<String> comments = new ArrayList<>();
+        List<Integer> variationPlies = new ArrayList<>();
+        List<String> variations = new ArrayList<>();
+        String result = null;
+        depth = 0;
+        while (result == null) {
+            c = skipWhitespace();
+            // a tag outside of a comment starts the next game, for games that end without a result
+            if (c == -1 || (c == '[' && depth == 0)) {
+                break;
+            }
+            next();
+            switch (c) {
+                case '{', ';' -> {
+                    readText((c == '{') ? '}' : '\n');
+                    if (depth == 0) {
+                        commentPlies.add(moves.size());
+                        comments.add(textToString().trim());
+                    }
+                }
+                case '(' -> {
+                    if (depth == 0) {
+                        variationLength = 0;
+                    }
+                    depth++;
+                }
+                case ')' -> {
+                    if (depth > 0 && --depth == 0) {
+                        // an alternative to the last main line move, without its closing bracket
+                        variationPlies.add(Math.max(0, moves.size() - 1));
+                        variations.add(new String(variationText, 0, variationLength - 1, StandardCharsets.UTF_8).trim());
+                    }
+                }
+                case '%' -> skipLine();
+                case '$' -> {
+                    readToken(c);
+                    if (depth == 0 && token.length() > 1) {
+                        addNag(parseNag(token));
+                    }
+                }
+                case '!', '?' -> {
+                    readToken(c);
+                    if (depth == 0) {
+                        addNag(suffixToNag(token, 0, token.length()));
+                    }
+                }
+                case '*' -> {
+                    if (depth == 0) {
+                        result = "*";
+                    }
+                }
+                default -> {
+                    if (!isTokenChar(c)) {
+                        // stray character, e.g. a reserved '<'
+                        continue;
+                    }
+                    readToken(c);
+                    if (depth > 0) {
+                        continue;
+                    }
+                    if (isResult(token)) {
+                        result = token.toString();
+                        continue;
+                    }
+                    // move numbers like "12." and "12..." may run straight into the move
+                    int start = 0;
+                    while (!isCastlingWithZeros(token) && start < token.length() && (Character.isDigit(token.charAt(start)) || token.charAt(start) == '.')) {
+                        start++;
+                    }
+                    if (start == token.length() || error != null) {
+                        continue;
+                    }
+                    // annotation suffixes are NAGs, the check and mate signs carry no information
+                    int end = token.length();
+                    while (end > start && (token.charAt(end - 1) == '!' || token.charAt(end - 1) == '?')) {
+                        end--;
+                    }
+                    int suffix = (end < token.length()) ? suffixToNag(token, end, token.length()) : 0;
+                    while (end > start && (token.charAt(end - 1) == '+' || token.charAt(end - 1) == '#')) {
+                        end--;
+                    }
+                    int move = Notation.algebraicToPackedMove(board, token, start, end);
+                    if (move == PackedMove.NONE) {
+                        error = "Illegal or ambiguous move " + token.substring(start) + " at ply " + (moves.size() + 1);
+                        continue;
+                    }
+                    board.playMove(move);
+                    moves.add(move);
+                    if (suffix != 0) {
+                        addNag(suffix);
+                    }
+                }
+            }
+        }
+
+        // a variation left open at the end of the input is dropped
+        depth = 0;
+        return new PgnGame(headers, toArray(moves), result, toArray(commentPlies), comments,
+                toArray(variationPlies), variations, toArray(nags), error);
+    }
+
+    // hands every remaining game to the consumer, in file order
+    public void readAll(Consumer<PgnGame> consumer) throws IOException {
+        PgnGame game;
+        while ((game = readGame()) != null) {
+            consumer.accept(game);
+        }
+    }
+
+    // the board after the main line of the last game read
+    public Board getBoard() {
+        return board;
+    }
+
+    private void addNag(int nag) {
+        if (nag > 0 && nag < 256) {
+            nags.add((moves.size() << 8) | nag);
+        }
+    }
+
+    // "$14" to 14, 0 if it is not a number
+    private static int parseNag(CharSequence nag) {
+        int res = 0;
+        for (int i = 1; i < nag.length(); i++) {
+            char c = nag.charAt(i);
+            if (c < '0' || c > '9' || res > 255) {
+                return 0;
+            }
+            res = res * 10 + (c - '0');
+        }
+        return res;
+    }
+
+    // the NAG numbers the PGN standard gives the traditional move suffixes, 0 for anything else
+    private static int suffixToNag(CharSequence s, int start, int end) {
+        for (int i = 0; i < MOVE_SUFFIXES.length; i++) {
+            if (contentEquals(s, start, end, MOVE_SUFFIXES[i])) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isCastlingWithZeros(CharSequence s) {
+        return s.length() >= 3 && s.charAt(0) == '0' && s.charAt(1) == '-' && s.charAt(2) == '0';
+    }
+
+    private static boolean isResult(CharSequence s) {
+        return contentEquals(s, "1-0") || contentEquals(s, "0-1") || contentEquals(s, "1/2-1/2");
+    }
+
+    private static boolean contentEquals(CharSequence s, String expected) {
+        return contentEquals(s, 0, s.length(), expected);
+    }
+
+    private static boolean contentEquals(CharSequence s, int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (s.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTokenChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '+' || c == '#' || c == '=' || c == ':' || c == '/' || c == '.'
+                || c == '_' || c == '!' || c == '?' || c == '$';
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] res = new int[list.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = list.get(i);
+        }
+        return res;
+    }
+
+    private static int[] toArray(MoveList list) {
+        int[] res = new int[list.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = list.get(i);
+        }
+        return res;
+    }
+
+    // [Name "value"], the value may contain \" and \\
+    private void readTag(Map<String, String> headers) throws IOException {
+        next();
+        int c = skipWhitespace();
+        token.setLength(0);
+        while (c != -1 && c != '"' && c != ']' && !isWhitespace(c)) {
+            token.append((char) c);
+            next();
+            c = peek();
+        }
+        String name = token.toString();
+        c = skipWhitespace();
+        textLength = 0;
+        if (c == '"') {
+            next();
+            while ((c = next()) != -1 && c != '"' && c != '\n') {
+                if (c == '\\') {
+                    c = next();
+                    if (c == -1) {
+                        break;
+                    }
+                }
+                appendText(c);
+            }
+        }
+        // the rest of a malformed tag is dropped with the closing bracket
+        while ((c = peek()) != -1 && c != '\n') {
+            next();
+            if (c == ']') {
+                break;
+            }
+        }
+        if (!name.isEmpty()) {
+            headers.put(name, textToString());
+        }
+    }
+
+    // a symbol, move number, result, NAG or suffix starting with an already consumed character
+    private void readToken(int first) throws IOException {
+        token.setLength(0);
+        token.append((char) first);
+        int c;
+        while ((c = peek()) != -1 && isTokenChar(c)) {
+            token.append((char) c);
+            next();
+        }
+    }
+
+    // comment text up to and including the terminator, kept as bytes until decoded as UTF-8
+    private void readText(int terminator) throws IOException {
+        textLength = 0;
+        int c;
+        while ((c = next()) != -1 && c != terminator) {
+            appendText(c);
+        }
+    }
+
+    private void appendText(int c) {
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, textLength * 2);
+        }
+        text[textLength++] = (byte) c;
+    }
+
+    private String textToString() {
+        return new String(text, 0, textLength, StandardCharsets.UTF_8);
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = next()) != -1 && c != '\n') {
+            // skip
+        }
+    }
+
+    // the next character that is not whitespace, without consuming it
+    private int skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) != -1 && isWhitespace(c)) {
+            next();
+        }
+        return c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+    }
+
+    // a UTF-8 byte order mark is only allowed at the very start of the input
+    private void skipByteOrderMark() throws IOException {
+        if (peek() != 0xEF) {
+            return;
+        }
+        int position = buffer.position();
+        if (buffer.remaining() >= 3
+                && (buffer.get(position + 1) & 0xFF) == 0xBB && (buffer.get(position + 2) & 0xFF) == 0xBF) {
+            buffer.position(position + 3);
+        }
+    }
+
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            buffer.position(buffer.position() + 1);
+            if (depth > 0) {
+                if (variationLength == variationText.length) {
+                    variationText = Arrays.copyOf(variationText, variationLength * 2);
+                }
+                variationText[variationLength++] = (byte) c;
+            }
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        if (channel == null) {
+            return false;
+        }
+        buffer.clear();
+        int read = channel.read(buffer);
+        buffer.flip();
+        return read > 0;
+    }
+}
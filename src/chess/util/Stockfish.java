@@ -10,7 +10,8 @@ public class Stockfish {
     private BufferedReader processReader;
     private BufferedWriter processWriter;
     private boolean isReady = false;
-    private Map<String, String> positionCache = new HashMap<>();
+    // best moves keyed by the position's Zobrist key mixed with the search time
+    private Map<Long, String> positionCache = new HashMap<>();
     private boolean useHash = true;
     private int hashSizeMB = 256; //
     private int elo = 1320;
@@ -124,10 +125,13 @@ public class Stockfish {
         return false;
     }
 
-    public String getBestMove(String fen, int waitTime) {
+    // the caller passes the key of the position the FEN describes, e.g. game.getPosition().getZobristKey()
+    public String getBestMove(String fen, long positionKey, int waitTime) {
+        // a longer search may find a better move, so the time is part of the key
+        long cacheKey = positionKey ^ (waitTime * 0x9E3779B97F4A7C15L);
         // check cache
-        if (useHash && positionCache.containsKey(fen + waitTime)) {
-            return positionCache.get(fen + waitTime);
+        if (useHash && positionCache.containsKey(cacheKey)) {
+            return positionCache.get(cacheKey);
         }
 
         // pass in position and calculate
@@ -142,7 +146,7 @@ public class Stockfish {
 
                 // cache the result
                 if (useHash) {
-                    positionCache.put(fen + waitTime, bestMove);
+                    positionCache.put(cacheKey, bestMove);
                 }
 
                 return bestMove;
@@ -158,6 +162,9 @@ public class Stockfish {
         }
         this.elo = elo;
 
+        // moves found at another strength no longer apply
+        positionCache.clear();
+
         // set UCI_LimitStrength and UCI_Elo
         boolean success = sendCommand("setoption name UCI_LimitStrength value true")
                 && sendCommand("setoption name UCI_Elo value " + elo);
@@ -165,6 +172,7 @@ public class Stockfish {
         return success;
     }
 
+    // not cached, the engine plans its time from the clocks and may answer differently each time
     public String getBestMoveWithTimeManagement(String fen, long whiteTimeMs, long blackTimeMs) {
         // pass in fen
         sendCommand("position fen " + fen);